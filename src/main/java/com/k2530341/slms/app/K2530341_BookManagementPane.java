@@ -2,28 +2,30 @@ package com.k2530341.slms.app;
 
 import com.k2530341.slms.model.book.*;
 import com.k2530341.slms.model.user.K2530341_User;
-import com.k2530341.slms.model.reservation.K2530341_ReservationStatus;
+import com.k2530341.slms.model.K2530341_Borrow;
+import com.k2530341.slms.model.reservation.K2530341_Reservation;
 import com.k2530341.slms.patterns.builder.K2530341_BookBuilder;
 import com.k2530341.slms.patterns.decorator.*;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
-import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 
-import java.util.List;
-
 /**
  * Book management pane for librarians.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_BookManagementPane extends VBox {
     private final K2530341_LibraryService libraryService;
+    private final K2530341_AsyncLibraryService asyncService;
     private TableView<K2530341_Book> bookTable;
+    private K2530341_PagerBar<K2530341_Book> pager;
     
-    public K2530341_BookManagementPane(K2530341_LibraryService libraryService) {
+    public K2530341_BookManagementPane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService) {
         this.libraryService = libraryService;
+        this.asyncService = asyncService;
         setupUI();
         refreshTable();
     }
@@ -35,6 +37,7 @@ public class K2530341_BookManagementPane extends VBox {
         // Table
         bookTable = new TableView<>();
         setupTable();
+        pager = new K2530341_PagerBar<>(bookTable, libraryService::getBooksPage, K2530341_PagerBar.DEFAULT_PAGE_SIZE);
         
         // Buttons
         HBox buttonBox = new HBox(10);
@@ -67,7 +70,7 @@ public class K2530341_BookManagementPane extends VBox {
         
         decoratorBox.getChildren().addAll(decorLabel, featuredBtn, recommendedBtn, viewDecorBtn);
         
-        getChildren().addAll(new Label("Book Management"), buttonBox, decoratorBox, bookTable);
+        getChildren().addAll(new Label("Book Management"), buttonBox, decoratorBox, bookTable, pager);
         VBox.setVgrow(bookTable, Priority.ALWAYS);
     }
     
@@ -130,33 +133,27 @@ public class K2530341_BookManagementPane extends VBox {
     private String getCurrentBookUser(K2530341_Book book) {
         if (book.getAvailabilityStatus() == K2530341_AvailabilityStatus.BORROWED) {
             // Find who borrowed this book
-            return libraryService.getAllBorrows().stream()
-                .filter(b -> b.getBookId().equals(book.getBookId()) && b.getReturnDate() == null)
-                .findFirst()
-                .map(b -> {
-                    K2530341_User user = libraryService.getUser(b.getUserId());
-                    return user != null ? user.getName() + " (Borrowed)" : "Unknown";
-                })
-                .orElse("-");
+            K2530341_Borrow borrow = libraryService.getCurrentBorrow(book.getBookId());
+            if (borrow == null) {
+                return "-";
+            }
+            K2530341_User user = libraryService.getUser(borrow.getUserId());
+            return user != null ? user.getName() + " (Borrowed)" : "Unknown";
         } else if (book.getAvailabilityStatus() == K2530341_AvailabilityStatus.RESERVED) {
             // Find who has notified reservation for this book
-            return libraryService.getAllReservations().stream()
-                .filter(r -> r.getBookId().equals(book.getBookId()) 
-                        && r.getStatus() == K2530341_ReservationStatus.NOTIFIED)
-                .findFirst()
-                .map(r -> {
-                    K2530341_User user = libraryService.getUser(r.getUserId());
-                    return user != null ? user.getName() + " (Reserved)" : "Unknown";
-                })
-                .orElse("-");
+            K2530341_Reservation reservation = libraryService.getNotifiedReservation(book.getBookId());
+            if (reservation == null) {
+                return "-";
+            }
+            K2530341_User user = libraryService.getUser(reservation.getUserId());
+            return user != null ? user.getName() + " (Reserved)" : "Unknown";
         }
         return "-";
     }
     
     private void refreshTable() {
-        List<K2530341_Book> books = libraryService.getAllBooks();
-        bookTable.getItems().clear();
-        bookTable.setItems(FXCollections.observableArrayList(books));
+        // Only the visible page is fetched from the service
+        pager.refresh();
     }
     
     private void showAddBookDialog() {
@@ -238,15 +235,16 @@ public class K2530341_BookManagementPane extends VBox {
         
         dialog.showAndWait().ifPresent(book -> {
             if (book != null) {
-                String result = libraryService.addBook(book);
-                if ("SUCCESS".equals(result)) {
-                    refreshTable();
-                    showAlert("Success", "Book added successfully!");
-                } else if ("DUPLICATE_ID".equals(result)) {
-                    showAlert("Error", "A book with ID '" + book.getBookId() + "' already exists.");
-                } else {
-                    showAlert("Error", "Failed to add book.");
-                }
+                asyncService.execute(() -> libraryService.addBook(book)).thenAccept(result -> {
+                    if ("SUCCESS".equals(result)) {
+                        refreshTable();
+                        showAlert("Success", "Book added successfully!");
+                    } else if ("DUPLICATE_ID".equals(result)) {
+                        showAlert("Error", "A book with ID '" + book.getBookId() + "' already exists.");
+                    } else {
+                        showAlert("Error", "Failed to add book.");
+                    }
+                }).exceptionally(this::showError);
             }
         });
     }
@@ -296,13 +294,25 @@ public class K2530341_BookManagementPane extends VBox {
                     return;
                 }
                 
-                selected.setTitle(titleField.getText().trim());
-                selected.setAuthor(authorField.getText().trim());
-                selected.setCategory(categoryField.getText().trim());
-                selected.setIsbn(isbnField.getText().trim());
-                libraryService.updateBook(selected);
-                refreshTable();
-                showAlert("Success", "Book updated successfully!");
+                String title = titleField.getText().trim();
+                String author = authorField.getText().trim();
+                String category = categoryField.getText().trim();
+                String isbn = isbnField.getText().trim();
+                asyncService.execute(() -> {
+                    // table rows are snapshot copies - edit the live book
+                    K2530341_Book book = libraryService.getBook(selected.getBookId());
+                    if (book != null) {
+                        book.setTitle(title);
+                        book.setAuthor(author);
+                        book.setCategory(category);
+                        book.setIsbn(isbn);
+                        libraryService.updateBook(book);
+                    }
+                    return null;
+                }).thenAccept(done -> {
+                    refreshTable();
+                    showAlert("Success", "Book updated successfully!");
+                }).exceptionally(this::showError);
             }
         });
     }
@@ -321,9 +331,13 @@ public class K2530341_BookManagementPane extends VBox {
         
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                libraryService.deleteBook(selected.getBookId());
-                refreshTable();
-                showAlert("Success", "Book deleted successfully!");
+                asyncService.execute(() -> {
+                    libraryService.deleteBook(selected.getBookId());
+                    return null;
+                }).thenAccept(done -> {
+                    refreshTable();
+                    showAlert("Success", "Book deleted successfully!");
+                }).exceptionally(this::showError);
             }
         });
     }
@@ -343,20 +357,32 @@ public class K2530341_BookManagementPane extends VBox {
         }
         
         String newTags = currentTags.isEmpty() ? "FEATURED" : currentTags + ", FEATURED";
-        selected.setOptionalTags(newTags);
-        libraryService.updateBook(selected);
-        refreshTable();
-        
-        // Show decorator pattern demonstration
-        K2530341_BookComponent component = new K2530341_ConcreteBook(selected);
-        K2530341_BookComponent decorated = new K2530341_FeaturedDecorator(component);
-        
-        showAlert("Success - Decorator Pattern Applied", 
-            "Book marked as Featured!\n\n" +
-            "Decorator Pattern Demonstration:\n" +
-            "Original: " + component.getDescription() + "\n" +
-            "Decorated: " + decorated.getDescription() + "\n" +
-            "Priority: " + component.getPriority() + " → " + decorated.getPriority());
+        asyncService.execute(() -> {
+            // table rows are snapshot copies - tag the live book
+            K2530341_Book book = libraryService.getBook(selected.getBookId());
+            if (book != null) {
+                book.setOptionalTags(newTags);
+                libraryService.updateBook(book);
+            }
+            return book;
+        }).thenAccept(book -> {
+            refreshTable();
+            if (book == null) {
+                showAlert("Error", "Book no longer exists.");
+                return;
+            }
+            
+            // Show decorator pattern demonstration
+            K2530341_BookComponent component = new K2530341_ConcreteBook(book);
+            K2530341_BookComponent decorated = new K2530341_FeaturedDecorator(component);
+            
+            showAlert("Success - Decorator Pattern Applied", 
+                "Book marked as Featured!\n\n" +
+                "Decorator Pattern Demonstration:\n" +
+                "Original: " + component.getDescription() + "\n" +
+                "Decorated: " + decorated.getDescription() + "\n" +
+                "Priority: " + component.getPriority() + " → " + decorated.getPriority());
+        }).exceptionally(this::showError);
     }
     
     private void markBookAsRecommended() {
@@ -374,20 +400,32 @@ public class K2530341_BookManagementPane extends VBox {
         }
         
         String newTags = currentTags.isEmpty() ? "RECOMMENDED" : currentTags + ", RECOMMENDED";
-        selected.setOptionalTags(newTags);
-        libraryService.updateBook(selected);
-        refreshTable();
-        
-        // Show decorator pattern demonstration
-        K2530341_BookComponent component = new K2530341_ConcreteBook(selected);
-        K2530341_BookComponent decorated = new K2530341_RecommendedDecorator(component);
-        
-        showAlert("Success - Decorator Pattern Applied", 
-            "Book marked as Recommended!\n\n" +
-            "Decorator Pattern Demonstration:\n" +
-            "Original: " + component.getDescription() + "\n" +
-            "Decorated: " + decorated.getDescription() + "\n" +
-            "Priority: " + component.getPriority() + " → " + decorated.getPriority());
+        asyncService.execute(() -> {
+            // table rows are snapshot copies - tag the live book
+            K2530341_Book book = libraryService.getBook(selected.getBookId());
+            if (book != null) {
+                book.setOptionalTags(newTags);
+                libraryService.updateBook(book);
+            }
+            return book;
+        }).thenAccept(book -> {
+            refreshTable();
+            if (book == null) {
+                showAlert("Error", "Book no longer exists.");
+                return;
+            }
+            
+            // Show decorator pattern demonstration
+            K2530341_BookComponent component = new K2530341_ConcreteBook(book);
+            K2530341_BookComponent decorated = new K2530341_RecommendedDecorator(component);
+            
+            showAlert("Success - Decorator Pattern Applied", 
+                "Book marked as Recommended!\n\n" +
+                "Decorator Pattern Demonstration:\n" +
+                "Original: " + component.getDescription() + "\n" +
+                "Decorated: " + decorated.getDescription() + "\n" +
+                "Priority: " + component.getPriority() + " → " + decorated.getPriority());
+        }).exceptionally(this::showError);
     }
     
     private void viewBookDecorations() {
@@ -431,6 +469,13 @@ public class K2530341_BookManagementPane extends VBox {
         showAlert("Book Decorations & Metadata", message);
     }
     
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
+    }
+    
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
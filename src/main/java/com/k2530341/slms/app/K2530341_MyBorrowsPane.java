@@ -3,6 +3,7 @@ package com.k2530341.slms.app;
 import com.k2530341.slms.model.K2530341_Borrow;
 import com.k2530341.slms.model.book.K2530341_Book;
 import com.k2530341.slms.model.user.K2530341_User;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
 import com.k2530341.slms.patterns.command.*;
 import javafx.collections.FXCollections;
@@ -18,13 +19,16 @@ import java.util.*;
  */
 public class K2530341_MyBorrowsPane extends VBox {
     private final K2530341_LibraryService libraryService;
+    private final K2530341_AsyncLibraryService asyncService;
     private final String userId;
     private final K2530341_CommandManager commandManager;
     private ListView<String> borrowsList;
     private Label borrowLimitLabel;
     
-    public K2530341_MyBorrowsPane(K2530341_LibraryService libraryService, String userId, K2530341_CommandManager commandManager) {
+    public K2530341_MyBorrowsPane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService,
+                                  String userId, K2530341_CommandManager commandManager) {
         this.libraryService = libraryService;
+        this.asyncService = asyncService;
         this.userId = userId;
         this.commandManager = commandManager;
         setupUI();
@@ -137,21 +141,28 @@ public class K2530341_MyBorrowsPane extends VBox {
         Optional<ButtonType> result = confirmAlert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             K2530341_Command returnCommand = new K2530341_ReturnCommand(libraryService, borrowId);
-            boolean success = commandManager.executeCommand(returnCommand);
-            
-            if (success) {
-                String successMessage = fine > 0
-                    ? String.format("Book returned successfully!\n\nFine charged: LKR %.2f\nPlease pay at the library counter.", fine)
-                    : "Book returned successfully!\n\nNo fine - returned on time. Thank you!";
+            asyncService.execute(() -> commandManager.executeCommand(returnCommand)).thenAccept(success -> {
+                if (success) {
+                    String successMessage = fine > 0
+                        ? String.format("Book returned successfully!\n\nFine charged: LKR %.2f\nPlease pay at the library counter.", fine)
+                        : "Book returned successfully!\n\nNo fine - returned on time. Thank you!";
                     
-                showAlert("Success", successMessage);
-                refreshList();
-            } else {
-                showAlert("Error", "Cannot return this book.");
-            }
+                    showAlert("Success", successMessage);
+                    refreshList();
+                } else {
+                    showAlert("Error", "Cannot return this book.");
+                }
+            }).exceptionally(this::showError);
         }
     }
     
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
+    }
+    
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -2,6 +2,7 @@ package com.k2530341.slms.app;
 
 import com.k2530341.slms.model.reservation.K2530341_Reservation;
 import com.k2530341.slms.model.book.K2530341_Book;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
 import com.k2530341.slms.patterns.command.K2530341_CancelReservationCommand;
 import com.k2530341.slms.patterns.command.K2530341_Command;
@@ -18,12 +19,15 @@ import java.util.*;
  */
 public class K2530341_MyReservationsPane extends VBox {
     private final K2530341_LibraryService libraryService;
+    private final K2530341_AsyncLibraryService asyncService;
     private final String userId;
     private ListView<String> reservationsList;
     private List<K2530341_Reservation> currentReservations;
     
-    public K2530341_MyReservationsPane(K2530341_LibraryService libraryService, String userId) {
+    public K2530341_MyReservationsPane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService,
+                                       String userId) {
         this.libraryService = libraryService;
+        this.asyncService = asyncService;
         this.userId = userId;
         setupUI();
         refreshList();
@@ -93,14 +97,21 @@ public class K2530341_MyReservationsPane extends VBox {
         
         // Use Command Pattern to cancel reservation
         K2530341_Command cancelCommand = new K2530341_CancelReservationCommand(libraryService, reservation.getReservationId());
-        boolean success = cancelCommand.execute();
-        
-        if (success) {
-            showAlert("Success", "Reservation cancelled successfully!");
-            refreshList();
-        } else {
-            showAlert("Error", "Failed to cancel reservation.");
-        }
+        asyncService.execute(cancelCommand::execute).thenAccept(success -> {
+            if (success) {
+                showAlert("Success", "Reservation cancelled successfully!");
+                refreshList();
+            } else {
+                showAlert("Error", "Failed to cancel reservation.");
+            }
+        }).exceptionally(this::showError);
+    }
+    
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
     }
     
     private void showAlert(String title, String message) {
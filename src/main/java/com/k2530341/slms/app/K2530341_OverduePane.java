@@ -3,7 +3,9 @@ package com.k2530341.slms.app;
 import com.k2530341.slms.model.K2530341_Borrow;
 import com.k2530341.slms.model.book.K2530341_Book;
 import com.k2530341.slms.model.user.K2530341_User;
+import com.k2530341.slms.model.notification.K2530341_NotificationRequest;
 import com.k2530341.slms.model.notification.K2530341_NotificationType;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
 import com.k2530341.slms.patterns.strategy.*;
 import javafx.collections.FXCollections;
@@ -20,10 +22,12 @@ import java.util.*;
  */
 public class K2530341_OverduePane extends VBox {
     private final K2530341_LibraryService libraryService;
+    private final K2530341_AsyncLibraryService asyncService;
     private TableView<OverdueItem> overdueTable;
     
-    public K2530341_OverduePane(K2530341_LibraryService libraryService) {
+    public K2530341_OverduePane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService) {
         this.libraryService = libraryService;
+        this.asyncService = asyncService;
         setupUI();
         refreshTable();
     }
@@ -77,7 +81,19 @@ public class K2530341_OverduePane extends VBox {
         Button sendFineNotificationBtn = new Button("Send Fine Notification");
         sendFineNotificationBtn.setOnAction(e -> sendFineNotification());
         
-        buttonBox.getChildren().addAll(refreshBtn, sendDueReminderBtn, sendOverdueAlertBtn, sendFineNotificationBtn);
+        // The service sends due-soon and overdue reminders on its own; the buttons above are extra
+        CheckBox autoRemindersBox = new CheckBox("Send reminders automatically");
+        autoRemindersBox.setSelected(libraryService.isAutoReminders());
+        autoRemindersBox.setOnAction(e -> {
+            boolean enabled = autoRemindersBox.isSelected();
+            asyncService.execute(() -> {
+                libraryService.setAutoReminders(enabled);
+                return null;
+            });
+        });
+        
+        buttonBox.getChildren().addAll(refreshBtn, sendDueReminderBtn, sendOverdueAlertBtn, sendFineNotificationBtn,
+            autoRemindersBox);
         
         getChildren().addAll(titleLabel, overdueTable, buttonBox);
         VBox.setVgrow(overdueTable, Priority.ALWAYS);
@@ -110,32 +126,28 @@ public class K2530341_OverduePane extends VBox {
     }
     
     private void sendDueReminders() {
-        int count = 0;
         LocalDate today = LocalDate.now();
         LocalDate threeDaysFromNow = today.plusDays(3);
         
-        // Send reminders for books due within 3 days
-        List<K2530341_Borrow> allBorrows = libraryService.getAllBorrows();
-        for (K2530341_Borrow borrow : allBorrows) {
-            if (borrow.getReturnDate() == null) { // Not returned yet
+        // Send reminders for books due within 3 days (open borrows only), all in one batch
+        asyncService.execute(() -> {
+            List<K2530341_NotificationRequest> reminders = new ArrayList<>();
+            List<K2530341_Borrow> dueSoon = libraryService.getBorrowsDueBetween(today, threeDaysFromNow);
+            for (K2530341_Borrow borrow : dueSoon) {
                 LocalDate dueDate = borrow.getDueDate();
-                if (!dueDate.isBefore(today) && !dueDate.isAfter(threeDaysFromNow)) {
-                    K2530341_Book book = libraryService.getBook(borrow.getBookId());
-                    if (book != null) {
-                        long daysUntilDue = java.time.temporal.ChronoUnit.DAYS.between(today, dueDate);
-                        libraryService.createNotification(
-                            borrow.getUserId(),
-                            K2530341_NotificationType.DUE_REMINDER,
-                            "Reminder: '" + book.getTitle() + "' is due in " + daysUntilDue + " days (Due: " + dueDate + ")"
-                        );
-                        count++;
-                    }
+                K2530341_Book book = libraryService.getBook(borrow.getBookId());
+                if (book != null) {
+                    long daysUntilDue = java.time.temporal.ChronoUnit.DAYS.between(today, dueDate);
+                    reminders.add(new K2530341_NotificationRequest(
+                        borrow.getUserId(),
+                        K2530341_NotificationType.DUE_REMINDER,
+                        "Reminder: '" + book.getTitle() + "' is due in " + daysUntilDue + " days (Due: " + dueDate + ")"
+                    ));
                 }
             }
-        }
-        
-        showAlert("Success", count + " due reminders sent to users with books due within 3 days.");
-        libraryService.saveAllData();
+            return libraryService.createNotifications(reminders).size();
+        }).thenAccept(sent -> showAlert("Success", sent + " due reminders sent to users with books due within 3 days."))
+            .exceptionally(this::showError);
     }
     
     private void sendOverdueAlert() {
@@ -145,15 +157,16 @@ public class K2530341_OverduePane extends VBox {
             return;
         }
         
-        libraryService.createNotification(
-            selected.userId,
-            K2530341_NotificationType.OVERDUE_ALERT,
-            "OVERDUE ALERT: '" + selected.bookTitle + "' is " + selected.overdueDays + " days overdue! " +
-            "Fine: LKR " + selected.fineAmount + ". Please return immediately."
-        );
-        
-        showAlert("Success", "Overdue alert sent to " + selected.userName);
-        libraryService.saveAllData();
+        asyncService.execute(() -> {
+            libraryService.createNotification(
+                selected.userId,
+                K2530341_NotificationType.OVERDUE_ALERT,
+                "OVERDUE ALERT: '" + selected.bookTitle + "' is " + selected.overdueDays + " days overdue! " +
+                "Fine: LKR " + selected.fineAmount + ". Please return immediately."
+            );
+            return null;
+        }).thenAccept(done -> showAlert("Success", "Overdue alert sent to " + selected.userName))
+            .exceptionally(this::showError);
     }
     
     private void sendFineNotification() {
@@ -163,15 +176,16 @@ public class K2530341_OverduePane extends VBox {
             return;
         }
         
-        libraryService.createNotification(
-            selected.userId,
-            K2530341_NotificationType.FINE_ALERT,
-            "FINE NOTIFICATION: You owe LKR " + selected.fineAmount + " for '" + selected.bookTitle + "' " +
-            "(" + selected.overdueDays + " days overdue). Please pay at the library counter."
-        );
-        
-        showAlert("Success", "Fine notification sent to " + selected.userName);
-        libraryService.saveAllData();
+        asyncService.execute(() -> {
+            libraryService.createNotification(
+                selected.userId,
+                K2530341_NotificationType.FINE_ALERT,
+                "FINE NOTIFICATION: You owe LKR " + selected.fineAmount + " for '" + selected.bookTitle + "' " +
+                "(" + selected.overdueDays + " days overdue). Please pay at the library counter."
+            );
+            return null;
+        }).thenAccept(done -> showAlert("Success", "Fine notification sent to " + selected.userName))
+            .exceptionally(this::showError);
     }
     
     private K2530341_FineStrategy getFineStrategy(com.k2530341.slms.model.user.K2530341_MembershipType type) {
@@ -187,6 +201,13 @@ public class K2530341_OverduePane extends VBox {
         }
     }
     
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
+    }
+    
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
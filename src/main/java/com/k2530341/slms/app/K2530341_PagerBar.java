@@ -0,0 +1,80 @@
+package com.k2530341.slms.app;
+
+import com.k2530341.slms.service.K2530341_Page;
+import javafx.collections.FXCollections;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BiFunction;
+
+/**
+ * Previous/Next controls that page a table through a cursor-based query,
+ * so the table only ever holds the visible page.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_PagerBar<T> extends HBox {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    
+    private final TableView<T> table;
+    private final BiFunction<String, Integer, K2530341_Page<T>> query;
+    private final int pageSize;
+    // cursors of the pages before the current one, for going back
+    private final Deque<String> previousCursors = new ArrayDeque<>();
+    private String currentCursor;
+    private String nextCursor;
+    
+    private final Button previousBtn = new Button("◀ Previous");
+    private final Button nextBtn = new Button("Next ▶");
+    private final Label pageLabel = new Label();
+    
+    /**
+     * @param table Table showing the current page
+     * @param query Page query taking (cursor, pageSize), e.g. libraryService::getBooksPage
+     * @param pageSize Rows per page
+     */
+    public K2530341_PagerBar(TableView<T> table, BiFunction<String, Integer, K2530341_Page<T>> query, int pageSize) {
+        super(10);
+        this.table = table;
+        this.query = query;
+        this.pageSize = pageSize;
+        setAlignment(Pos.CENTER_LEFT);
+        
+        previousBtn.setOnAction(e -> {
+            currentCursor = previousCursors.pop();
+            refresh();
+        });
+        nextBtn.setOnAction(e -> {
+            previousCursors.push(currentCursor == null ? "" : currentCursor);
+            currentCursor = nextCursor;
+            refresh();
+        });
+        getChildren().addAll(previousBtn, pageLabel, nextBtn);
+    }
+    
+    /**
+     * Reload the current page (after records were added, edited or removed).
+     */
+    public void refresh() {
+        String cursor = currentCursor == null || currentCursor.isEmpty() ? null : currentCursor;
+        K2530341_Page<T> page = query.apply(cursor, pageSize);
+        if (page.getItems().isEmpty() && !previousCursors.isEmpty()) {
+            // the page emptied (e.g. its last record was deleted) - step back
+            currentCursor = previousCursors.pop();
+            refresh();
+            return;
+        }
+        nextCursor = page.getNextCursor();
+        table.setItems(FXCollections.observableArrayList(page.getItems()));
+        
+        int pageNumber = previousCursors.size() + 1;
+        int pageCount = Math.max(1, (page.getTotalCount() + pageSize - 1) / pageSize);
+        pageLabel.setText(String.format("Page %d of %d (%d total)", pageNumber, pageCount, page.getTotalCount()));
+        previousBtn.setDisable(previousCursors.isEmpty());
+        nextBtn.setDisable(!page.hasNext());
+    }
+}
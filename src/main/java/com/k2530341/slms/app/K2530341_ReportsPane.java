@@ -2,8 +2,8 @@ package com.k2530341.slms.app;
 
 import com.k2530341.slms.model.book.K2530341_Book;
 import com.k2530341.slms.model.user.K2530341_User;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
-import com.k2530341.slms.service.K2530341_ReportService;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
@@ -12,7 +12,6 @@ import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 
 import java.io.File;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,11 +20,11 @@ import java.util.Map;
  */
 public class K2530341_ReportsPane extends VBox {
     private final K2530341_LibraryService libraryService;
-    private final K2530341_ReportService reportService;
+    private final K2530341_AsyncLibraryService asyncService;
     
-    public K2530341_ReportsPane(K2530341_LibraryService libraryService, K2530341_ReportService reportService) {
+    public K2530341_ReportsPane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService) {
         this.libraryService = libraryService;
-        this.reportService = reportService;
+        this.asyncService = asyncService;
         setupUI();
     }
     
@@ -54,8 +53,9 @@ public class K2530341_ReportsPane extends VBox {
         showBorrowedBtn.setOnAction(e -> {
             try {
                 int count = Integer.parseInt(borrowedCountField.getText());
-                List<K2530341_Book> books = reportService.getMostBorrowedBooks(count);
-                borrowedTable.setItems(FXCollections.observableArrayList(books));
+                asyncService.getMostBorrowedBooks(count)
+                    .thenAccept(books -> borrowedTable.setItems(FXCollections.observableArrayList(books)))
+                    .exceptionally(this::showError);
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Invalid number");
             }
@@ -69,8 +69,8 @@ public class K2530341_ReportsPane extends VBox {
             if (file != null) {
                 try {
                     int count = Integer.parseInt(borrowedCountField.getText());
-                    reportService.exportMostBorrowedBooks(file.getAbsolutePath(), count);
-                    showAlert("Success", "Report exported successfully!");
+                    asyncService.exportMostBorrowedBooks(file.getAbsolutePath(), count)
+                        .whenComplete((done, error) -> showExportResult(error));
                 } catch (Exception ex) {
                     showAlert("Error", "Export failed: " + ex.getMessage());
                 }
@@ -99,8 +99,9 @@ public class K2530341_ReportsPane extends VBox {
         showActiveBtn.setOnAction(e -> {
             try {
                 int count = Integer.parseInt(activeCountField.getText());
-                List<K2530341_User> users = reportService.getActiveBorrowers(count);
-                activeTable.setItems(FXCollections.observableArrayList(users));
+                asyncService.getActiveBorrowers(count)
+                    .thenAccept(users -> activeTable.setItems(FXCollections.observableArrayList(users)))
+                    .exceptionally(this::showError);
             } catch (NumberFormatException ex) {
                 showAlert("Error", "Invalid number");
             }
@@ -114,8 +115,8 @@ public class K2530341_ReportsPane extends VBox {
             if (file != null) {
                 try {
                     int count = Integer.parseInt(activeCountField.getText());
-                    reportService.exportActiveBorrowers(file.getAbsolutePath(), count);
-                    showAlert("Success", "Report exported successfully!");
+                    asyncService.exportActiveBorrowers(file.getAbsolutePath(), count)
+                        .whenComplete((done, error) -> showExportResult(error));
                 } catch (Exception ex) {
                     showAlert("Error", "Export failed: " + ex.getMessage());
                 }
@@ -126,7 +127,22 @@ public class K2530341_ReportsPane extends VBox {
             new Label("Top:"), activeCountField, showActiveBtn, exportActiveBtn);
         activeBox.getChildren().addAll(activeLabel, activeControls, activeTable);
         
-        getChildren().addAll(titleLabel, new Separator(), borrowedBox, new Separator(), activeBox);
+        // Data export - the CSV files are only rewritten on request when snapshots are binary
+        HBox dataControls = new HBox(10);
+        Button exportDataBtn = new Button("Export Library Data to CSV");
+        exportDataBtn.setOnAction(e -> asyncService.exportCsv().whenComplete((saved, error) -> {
+            if (error != null) {
+                showExportResult(error);
+            } else if (saved) {
+                showAlert("Success", "Library data exported to the CSV files in the data folder.");
+            } else {
+                showAlert("Error", "Export failed: some data files could not be written.");
+            }
+        }));
+        dataControls.getChildren().add(exportDataBtn);
+        
+        getChildren().addAll(titleLabel, new Separator(), borrowedBox, new Separator(), activeBox,
+            new Separator(), dataControls);
     }
     
     private void setupBorrowedBooksTable(TableView<K2530341_Book> table) {
@@ -161,6 +177,22 @@ public class K2530341_ReportsPane extends VBox {
         table.getColumns().addAll(idCol, nameCol, typeCol, countCol);
     }
     
+    private void showExportResult(Throwable error) {
+        if (error == null) {
+            showAlert("Success", "Report exported successfully!");
+        } else {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            showAlert("Error", "Export failed: " + cause.getMessage());
+        }
+    }
+    
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
+    }
+    
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
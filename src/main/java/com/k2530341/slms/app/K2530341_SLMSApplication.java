@@ -1,9 +1,11 @@
 package com.k2530341.slms.app;
 
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
 import com.k2530341.slms.service.K2530341_ReportService;
 import com.k2530341.slms.patterns.command.K2530341_CommandManager;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -19,6 +21,7 @@ import javafx.stage.Stage;
 public class K2530341_SLMSApplication extends Application {
     private K2530341_LibraryService libraryService;
     private K2530341_ReportService reportService;
+    private K2530341_AsyncLibraryService asyncService;
     private K2530341_CommandManager commandManager;
     private Stage primaryStage;
     private String currentUserId;
@@ -37,6 +40,9 @@ public class K2530341_SLMSApplication extends Application {
         libraryService = new K2530341_LibraryService();
         libraryService.initialize();
         reportService = new K2530341_ReportService(libraryService);
+        // pane actions run off the FX thread (mutations through the single-writer
+        // pipeline); their results come back through runLater
+        asyncService = new K2530341_AsyncLibraryService(libraryService, reportService, Platform::runLater);
         commandManager = new K2530341_CommandManager();
         
         // Show role selection screen
@@ -44,7 +50,9 @@ public class K2530341_SLMSApplication extends Application {
         
         // Save data on exit
         primaryStage.setOnCloseRequest(event -> {
+            asyncService.shutdown();
             libraryService.saveAllData();
+            libraryService.shutdown();
         });
     }
     
@@ -134,19 +142,19 @@ public class K2530341_SLMSApplication extends Application {
         
         Tab booksTab = new Tab("Manage Books");
         booksTab.setClosable(false);
-        booksTab.setContent(new K2530341_BookManagementPane(libraryService));
+        booksTab.setContent(new K2530341_BookManagementPane(libraryService, asyncService));
         
         Tab usersTab = new Tab("Manage Users");
         usersTab.setClosable(false);
-        usersTab.setContent(new K2530341_UserManagementPane(libraryService));
+        usersTab.setContent(new K2530341_UserManagementPane(libraryService, asyncService));
         
         Tab reportsTab = new Tab("Reports");
         reportsTab.setClosable(false);
-        reportsTab.setContent(new K2530341_ReportsPane(libraryService, reportService));
+        reportsTab.setContent(new K2530341_ReportsPane(libraryService, asyncService));
         
         Tab overdueTab = new Tab("Overdue Books");
         overdueTab.setClosable(false);
-        overdueTab.setContent(new K2530341_OverduePane(libraryService));
+        overdueTab.setContent(new K2530341_OverduePane(libraryService, asyncService));
         
         tabPane.getTabs().addAll(booksTab, usersTab, reportsTab, overdueTab);
         
@@ -183,15 +191,15 @@ public class K2530341_SLMSApplication extends Application {
         
         Tab searchTab = new Tab("Search Books");
         searchTab.setClosable(false);
-        searchTab.setContent(new K2530341_SearchBooksPane(libraryService, currentUserId, commandManager));
+        searchTab.setContent(new K2530341_SearchBooksPane(libraryService, asyncService, currentUserId, commandManager));
         
         Tab borrowTab = new Tab("My Borrows");
         borrowTab.setClosable(false);
-        borrowTab.setContent(new K2530341_MyBorrowsPane(libraryService, currentUserId, commandManager));
+        borrowTab.setContent(new K2530341_MyBorrowsPane(libraryService, asyncService, currentUserId, commandManager));
         
         Tab reserveTab = new Tab("My Reservations");
         reserveTab.setClosable(false);
-        reserveTab.setContent(new K2530341_MyReservationsPane(libraryService, currentUserId));
+        reserveTab.setContent(new K2530341_MyReservationsPane(libraryService, asyncService, currentUserId));
         
         Tab notificationsTab = new Tab("Notifications");
         notificationsTab.setClosable(false);
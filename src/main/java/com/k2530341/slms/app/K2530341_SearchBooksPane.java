@@ -4,30 +4,55 @@ import com.k2530341.slms.model.book.K2530341_Book;
 import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
 import com.k2530341.slms.model.user.K2530341_User;
 import com.k2530341.slms.model.reservation.K2530341_ReservationStatus;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
+import com.k2530341.slms.service.K2530341_FacetResult;
 import com.k2530341.slms.service.K2530341_LibraryService;
 import com.k2530341.slms.patterns.command.*;
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
+import javafx.util.Duration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Search books pane for users.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_SearchBooksPane extends VBox {
+    private static final int MAX_SUGGESTIONS = 8;
+    private static final Duration SUGGESTION_DELAY = Duration.millis(200);
+    
     private final K2530341_LibraryService libraryService;
+    private final K2530341_AsyncLibraryService asyncService;
     private final String userId;
     private final K2530341_CommandManager commandManager;
     private TableView<K2530341_Book> bookTable;
     private TextField searchField;
     private Label fineStatusLabel;
+    private ContextMenu suggestionMenu;
+    private PauseTransition suggestionDelay;
+    private boolean suppressSuggestions;
+    private ComboBox<String> categoryFilter;
+    private ComboBox<String> statusFilter;
+    private ComboBox<String> tagFilter;
+    private Map<String, Integer> categoryCounts = new HashMap<>();
+    private Map<String, Integer> statusCounts = new HashMap<>();
+    private Map<String, Integer> tagCounts = new HashMap<>();
+    private boolean updatingFilters;
     
-    public K2530341_SearchBooksPane(K2530341_LibraryService libraryService, String userId, K2530341_CommandManager commandManager) {
+    public K2530341_SearchBooksPane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService,
+                                   String userId, K2530341_CommandManager commandManager) {
         this.libraryService = libraryService;
+        this.asyncService = asyncService;
         this.userId = userId;
         this.commandManager = commandManager;
         setupUI();
@@ -54,9 +79,19 @@ public class K2530341_SearchBooksPane extends VBox {
         
         searchBtn.setOnAction(e -> performSearch());
         showAllBtn.setOnAction(e -> loadAllBooks());
+        searchField.setOnAction(e -> performSearch());
+        setupSuggestions();
         
         searchBox.getChildren().addAll(searchField, searchBtn, showAllBtn);
         
+        // Facet filters - each option shows how many books it would leave
+        HBox filterBox = new HBox(10);
+        categoryFilter = createFacetFilter(() -> categoryCounts);
+        statusFilter = createFacetFilter(() -> statusCounts);
+        tagFilter = createFacetFilter(() -> tagCounts);
+        filterBox.getChildren().addAll(new Label("Category:"), categoryFilter,
+            new Label("Status:"), statusFilter, new Label("Tag:"), tagFilter);
+        
         bookTable = new TableView<>();
         setupTable();
         
@@ -69,10 +104,122 @@ public class K2530341_SearchBooksPane extends VBox {
         
         actionBox.getChildren().addAll(borrowBtn, reserveBtn);
         
-        getChildren().addAll(titleLabel, fineStatusLabel, searchBox, bookTable, actionBox);
+        getChildren().addAll(titleLabel, fineStatusLabel, searchBox, filterBox, bookTable, actionBox);
         VBox.setVgrow(bookTable, Priority.ALWAYS);
     }
     
+    private ComboBox<String> createFacetFilter(Supplier<Map<String, Integer>> counts) {
+        ComboBox<String> filter = new ComboBox<>();
+        // "" stands for no filter
+        filter.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setText(null);
+                } else if (item.isEmpty()) {
+                    setText("All");
+                } else {
+                    setText(item + " (" + counts.get().getOrDefault(item, 0) + ")");
+                }
+            }
+        });
+        filter.setButtonCell(filter.getCellFactory().call(null));
+        filter.setOnAction(e -> {
+            if (!updatingFilters) {
+                performSearch();
+            }
+        });
+        return filter;
+    }
+    
+    private void updateFacets(K2530341_FacetResult result) {
+        categoryCounts = result.getCategoryCounts();
+        statusCounts = new HashMap<>();
+        result.getStatusCounts().forEach((status, count) -> statusCounts.put(status.name(), count));
+        tagCounts = result.getTagCounts();
+        
+        updatingFilters = true;
+        updateFilterOptions(categoryFilter, categoryCounts);
+        updateFilterOptions(statusFilter, statusCounts);
+        updateFilterOptions(tagFilter, tagCounts);
+        updatingFilters = false;
+    }
+    
+    private void updateFilterOptions(ComboBox<String> filter, Map<String, Integer> counts) {
+        String selected = filter.getValue() == null ? "" : filter.getValue();
+        List<String> options = new ArrayList<>();
+        options.add("");
+        options.addAll(counts.keySet());
+        if (!options.contains(selected)) {
+            options.add(selected); // keep the current choice even when nothing matches it
+        }
+        filter.getItems().setAll(options);
+        filter.setValue(selected);
+    }
+    
+    private static String filterValue(ComboBox<String> filter) {
+        String value = filter.getValue();
+        return value == null || value.isEmpty() ? null : value;
+    }
+    
+    private void setupSuggestions() {
+        suggestionMenu = new ContextMenu();
+        // Debounce: only look up suggestions once typing pauses
+        suggestionDelay = new PauseTransition(SUGGESTION_DELAY);
+        suggestionDelay.setOnFinished(e -> requestSuggestions());
+        
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            if (suppressSuggestions) {
+                return;
+            }
+            if (newText == null || newText.trim().isEmpty()) {
+                suggestionDelay.stop();
+                suggestionMenu.hide();
+            } else {
+                suggestionDelay.playFromStart();
+            }
+        });
+        searchField.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) {
+                suggestionMenu.hide();
+            }
+        });
+    }
+    
+    private void requestSuggestions() {
+        String prefix = searchField.getText();
+        asyncService.autocomplete(prefix, MAX_SUGGESTIONS)
+            .thenAccept(suggestions -> showSuggestions(prefix, suggestions))
+            .exceptionally(this::showError);
+    }
+    
+    private void showSuggestions(String prefix, List<String> suggestions) {
+        // Drop results for text the user has already changed
+        if (!prefix.equals(searchField.getText()) || !searchField.isFocused()) {
+            return;
+        }
+        if (suggestions.isEmpty()) {
+            suggestionMenu.hide();
+            return;
+        }
+        suggestionMenu.getItems().clear();
+        for (String suggestion : suggestions) {
+            MenuItem item = new MenuItem(suggestion);
+            item.setOnAction(e -> {
+                suppressSuggestions = true;
+                searchField.setText(suggestion);
+                searchField.positionCaret(suggestion.length());
+                suppressSuggestions = false;
+                performSearch();
+            });
+            suggestionMenu.getItems().add(item);
+        }
+        if (!suggestionMenu.isShowing()) {
+            suggestionMenu.show(searchField, Side.BOTTOM, 0, 0);
+        }
+    }
+    
     private void updateFineStatus() {
         K2530341_User user = libraryService.getUser(userId);
         if (user != null) {
@@ -153,19 +300,33 @@ public class K2530341_SearchBooksPane extends VBox {
     }
     
     private void performSearch() {
+        suggestionDelay.stop();
+        suggestionMenu.hide();
         String query = searchField.getText().trim();
-        if (query.isEmpty()) {
-            loadAllBooks();
-            return;
-        }
+        String status = filterValue(statusFilter);
         
-        List<K2530341_Book> results = libraryService.searchBooks(query);
-        bookTable.setItems(FXCollections.observableArrayList(results));
+        // Ranked word search with substring fallback, narrowed by the selected facets
+        asyncService.searchBooksFaceted(query, filterValue(categoryFilter),
+            status == null ? null : K2530341_AvailabilityStatus.valueOf(status), filterValue(tagFilter))
+            .thenAccept(this::showResult)
+            .exceptionally(this::showError);
     }
     
     private void loadAllBooks() {
-        List<K2530341_Book> books = libraryService.getAllBooks();
-        bookTable.setItems(FXCollections.observableArrayList(books));
+        updatingFilters = true;
+        categoryFilter.setValue("");
+        statusFilter.setValue("");
+        tagFilter.setValue("");
+        updatingFilters = false;
+        
+        asyncService.searchBooksFaceted(null, null, null, null)
+            .thenAccept(this::showResult)
+            .exceptionally(this::showError);
+    }
+    
+    private void showResult(K2530341_FacetResult result) {
+        bookTable.setItems(FXCollections.observableArrayList(result.getBooks()));
+        updateFacets(result);
     }
     
     private void borrowSelectedBook() {
@@ -204,15 +365,15 @@ public class K2530341_SearchBooksPane extends VBox {
         }
         
         K2530341_Command borrowCommand = new K2530341_BorrowCommand(libraryService, selected.getBookId(), userId);
-        boolean success = commandManager.executeCommand(borrowCommand);
-        
-        if (success) {
-            showAlert("Success", "Book borrowed successfully!");
-            loadAllBooks();
-            updateFineStatus(); // Refresh fine status after borrowing
-        } else {
-            showAlert("Error", "Cannot borrow this book. Please check with the librarian.");
-        }
+        asyncService.execute(() -> commandManager.executeCommand(borrowCommand)).thenAccept(success -> {
+            if (success) {
+                showAlert("Success", "Book borrowed successfully!");
+                loadAllBooks();
+                updateFineStatus(); // Refresh fine status after borrowing
+            } else {
+                showAlert("Error", "Cannot borrow this book. Please check with the librarian.");
+            }
+        }).exceptionally(this::showError);
     }
     
     private void reserveSelectedBook() {
@@ -229,18 +390,25 @@ public class K2530341_SearchBooksPane extends VBox {
         }
         
         K2530341_Command reserveCommand = new K2530341_ReserveCommand(libraryService, selected.getBookId(), userId);
-        String result = ((K2530341_ReserveCommand)reserveCommand).executeWithResult();
-        
-        if (result != null && result.startsWith("RES-")) {
-            showAlert("Success", "Book reserved successfully! You will be notified when it becomes available.");
-            loadAllBooks();
-        } else if ("AVAILABLE".equals(result)) {
-            showAlert("Book Available", "This book is currently available to borrow now. Please use the 'Borrow Selected' button instead of reserving it.");
-        } else if ("ALREADY_BORROWED".equals(result)) {
-            showAlert("Already Borrowed", "You currently have this book borrowed. You cannot reserve a book you already have.");
-        } else {
-            showAlert("Error", "Cannot reserve this book.");
-        }
+        asyncService.execute(((K2530341_ReserveCommand)reserveCommand)::executeWithResult).thenAccept(result -> {
+            if (result != null && result.startsWith("RES-")) {
+                showAlert("Success", "Book reserved successfully! You will be notified when it becomes available.");
+                loadAllBooks();
+            } else if ("AVAILABLE".equals(result)) {
+                showAlert("Book Available", "This book is currently available to borrow now. Please use the 'Borrow Selected' button instead of reserving it.");
+            } else if ("ALREADY_BORROWED".equals(result)) {
+                showAlert("Already Borrowed", "You currently have this book borrowed. You cannot reserve a book you already have.");
+            } else {
+                showAlert("Error", "Cannot reserve this book.");
+            }
+        }).exceptionally(this::showError);
+    }
+    
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
     }
     
     private void showAlert(String title, String message) {
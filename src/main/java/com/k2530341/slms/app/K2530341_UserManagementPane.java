@@ -1,6 +1,7 @@
 package com.k2530341.slms.app;
 
 import com.k2530341.slms.model.user.*;
+import com.k2530341.slms.service.K2530341_AsyncLibraryService;
 import com.k2530341.slms.service.K2530341_LibraryService;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
@@ -8,18 +9,19 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 
-import java.util.List;
-
 /**
  * User management pane for librarians.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_UserManagementPane extends VBox {
     private final K2530341_LibraryService libraryService;
+    private final K2530341_AsyncLibraryService asyncService;
     private TableView<K2530341_User> userTable;
+    private K2530341_PagerBar<K2530341_User> pager;
     
-    public K2530341_UserManagementPane(K2530341_LibraryService libraryService) {
+    public K2530341_UserManagementPane(K2530341_LibraryService libraryService, K2530341_AsyncLibraryService asyncService) {
         this.libraryService = libraryService;
+        this.asyncService = asyncService;
         setupUI();
         refreshTable();
     }
@@ -30,6 +32,7 @@ public class K2530341_UserManagementPane extends VBox {
         
         userTable = new TableView<>();
         setupTable();
+        pager = new K2530341_PagerBar<>(userTable, libraryService::getUsersPage, K2530341_PagerBar.DEFAULT_PAGE_SIZE);
         
         HBox buttonBox = new HBox(10);
         Button addBtn = new Button("Add User");
@@ -47,7 +50,7 @@ public class K2530341_UserManagementPane extends VBox {
         
         buttonBox.getChildren().addAll(addBtn, editBtn, deleteBtn, payFinesBtn, refreshBtn);
         
-        getChildren().addAll(new Label("User Management"), buttonBox, userTable);
+        getChildren().addAll(new Label("User Management"), buttonBox, userTable, pager);
         VBox.setVgrow(userTable, Priority.ALWAYS);
     }
     
@@ -78,9 +81,8 @@ public class K2530341_UserManagementPane extends VBox {
     }
     
     private void refreshTable() {
-        List<K2530341_User> users = libraryService.getAllUsers();
-        userTable.getItems().clear();
-        userTable.setItems(FXCollections.observableArrayList(users));
+        // Only the visible page is fetched from the service
+        pager.refresh();
     }
     
     private void showAddUserDialog() {
@@ -183,15 +185,16 @@ public class K2530341_UserManagementPane extends VBox {
         
         dialog.showAndWait().ifPresent(user -> {
             if (user != null) {
-                String result = libraryService.addUser(user);
-                if ("SUCCESS".equals(result)) {
-                    refreshTable();
-                    showAlert("Success", "User added successfully!");
-                } else if ("DUPLICATE_ID".equals(result)) {
-                    showAlert("Error", "A user with ID '" + user.getUserId() + "' already exists.");
-                } else {
-                    showAlert("Error", "Failed to add user.");
-                }
+                asyncService.execute(() -> libraryService.addUser(user)).thenAccept(result -> {
+                    if ("SUCCESS".equals(result)) {
+                        refreshTable();
+                        showAlert("Success", "User added successfully!");
+                    } else if ("DUPLICATE_ID".equals(result)) {
+                        showAlert("Error", "A user with ID '" + user.getUserId() + "' already exists.");
+                    } else {
+                        showAlert("Error", "Failed to add user.");
+                    }
+                }).exceptionally(this::showError);
             }
         });
     }
@@ -237,12 +240,23 @@ public class K2530341_UserManagementPane extends VBox {
                     return;
                 }
                 
-                selected.setName(nameField.getText().trim());
-                selected.setEmail(emailField.getText().trim());
-                selected.setContactNumber(contactField.getText().trim());
-                libraryService.updateUser(selected);
-                refreshTable();
-                showAlert("Success", "User updated successfully!");
+                String name = nameField.getText().trim();
+                String email = emailField.getText().trim();
+                String contact = contactField.getText().trim();
+                asyncService.execute(() -> {
+                    // table rows are snapshot copies - edit the live user
+                    K2530341_User user = libraryService.getUser(selected.getUserId());
+                    if (user != null) {
+                        user.setName(name);
+                        user.setEmail(email);
+                        user.setContactNumber(contact);
+                        libraryService.updateUser(user);
+                    }
+                    return null;
+                }).thenAccept(done -> {
+                    refreshTable();
+                    showAlert("Success", "User updated successfully!");
+                }).exceptionally(this::showError);
             }
         });
     }
@@ -261,9 +275,13 @@ public class K2530341_UserManagementPane extends VBox {
         
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                libraryService.deleteUser(selected.getUserId());
-                refreshTable();
-                showAlert("Success", "User deleted successfully!");
+                asyncService.execute(() -> {
+                    libraryService.deleteUser(selected.getUserId());
+                    return null;
+                }).thenAccept(done -> {
+                    refreshTable();
+                    showAlert("Success", "User deleted successfully!");
+                }).exceptionally(this::showError);
             }
         });
     }
@@ -275,7 +293,13 @@ public class K2530341_UserManagementPane extends VBox {
             return;
         }
         
-        double currentFines = selected.getUnpaidFines();
+        // Read the fines off the live user - the table row is a snapshot copy
+        K2530341_User live = libraryService.getUser(selected.getUserId());
+        if (live == null) {
+            showAlert("Error", "User no longer exists.");
+            return;
+        }
+        double currentFines = live.getUnpaidFines();
         if (currentFines <= 0) {
             showAlert("No Fines", "This user has no unpaid fines.");
             return;
@@ -332,22 +356,41 @@ public class K2530341_UserManagementPane extends VBox {
         
         dialog.showAndWait().ifPresent(amount -> {
             if (amount != null) {
-                selected.payFine(amount);
-                libraryService.saveAllData();
-                refreshTable();
-                
-                double remaining = selected.getUnpaidFines();
-                String message;
-                if (remaining <= 0) {
-                    message = String.format("Payment of LKR %.2f received.\n\nAll fines cleared! User can now borrow books.", amount);
-                } else {
-                    message = String.format("Payment of LKR %.2f received.\n\nRemaining fines: LKR %.2f", amount, remaining);
-                }
-                showAlert("Payment Successful", message);
+                asyncService.execute(() -> {
+                    // table rows are snapshot copies - pay on the live user
+                    K2530341_User user = libraryService.getUser(selected.getUserId());
+                    if (user == null) {
+                        return null;
+                    }
+                    user.payFine(amount);
+                    libraryService.updateUser(user);
+                    return user.getUnpaidFines();
+                }).thenAccept(remaining -> {
+                    refreshTable();
+                    if (remaining == null) {
+                        showAlert("Error", "User no longer exists.");
+                        return;
+                    }
+                    
+                    String message;
+                    if (remaining <= 0) {
+                        message = String.format("Payment of LKR %.2f received.\n\nAll fines cleared! User can now borrow books.", amount);
+                    } else {
+                        message = String.format("Payment of LKR %.2f received.\n\nRemaining fines: LKR %.2f", amount, remaining);
+                    }
+                    showAlert("Payment Successful", message);
+                }).exceptionally(this::showError);
             }
         });
     }
     
+    // report a failed service call instead of dropping it silently
+    private Void showError(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        showAlert("Error", "Operation failed: " + cause.getMessage());
+        return null;
+    }
+    
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -53,6 +53,13 @@ public class K2530341_Borrow {
         return 0;
     }
     
+    /**
+     * @return Detached copy of this borrow record
+     */
+    public K2530341_Borrow copy() {
+        return new K2530341_Borrow(borrowId, bookId, userId, borrowDate, dueDate, returnDate, finePaid);
+    }
+    
     // Getters and setters
     public String getBorrowId() {
         return borrowId;
@@ -89,6 +89,17 @@ public class K2530341_Book implements K2530341_Subject {
         }
     }
     
+    /**
+     * Copy the book's data and state; observers are not copied.
+     * @return Detached copy of this book
+     */
+    public K2530341_Book copy() {
+        K2530341_Book copy = new K2530341_Book(bookId, title, author, category, isbn,
+                                               availabilityStatus, borrowHistoryCount, optionalTags, edition);
+        copy.setState(currentState);
+        return copy;
+    }
+    
     public void incrementBorrowHistory() {
         this.borrowHistoryCount++;
     }
@@ -0,0 +1,30 @@
+package com.k2530341.slms.model.notification;
+
+/**
+ * A notification to be created: who gets it, what kind it is and what it says.
+ * The service assigns the ID and date when it creates it.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_NotificationRequest {
+    private final String userId;
+    private final K2530341_NotificationType type;
+    private final String message;
+    
+    public K2530341_NotificationRequest(String userId, K2530341_NotificationType type, String message) {
+        this.userId = userId;
+        this.type = type;
+        this.message = message;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public K2530341_NotificationType getType() {
+        return type;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+}
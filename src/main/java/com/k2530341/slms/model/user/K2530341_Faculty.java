@@ -26,4 +26,10 @@ public class K2530341_Faculty extends K2530341_User {
     public int getBorrowPeriodDays() {
         return BORROW_PERIOD_DAYS;
     }
+    
+    @Override
+    public K2530341_Faculty copy() {
+        return copyStateTo(new K2530341_Faculty(getUserId(), getName(), getEmail(),
+                                              getContactNumber(), getCurrentBorrowCount()));
+    }
 }
@@ -26,4 +26,10 @@ public class K2530341_Guest extends K2530341_User {
     public int getBorrowPeriodDays() {
         return BORROW_PERIOD_DAYS;
     }
+    
+    @Override
+    public K2530341_Guest copy() {
+        return copyStateTo(new K2530341_Guest(getUserId(), getName(), getEmail(),
+                                              getContactNumber(), getCurrentBorrowCount()));
+    }
 }
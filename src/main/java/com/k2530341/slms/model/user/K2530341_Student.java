@@ -26,4 +26,10 @@ public class K2530341_Student extends K2530341_User {
     public int getBorrowPeriodDays() {
         return BORROW_PERIOD_DAYS;
     }
+    
+    @Override
+    public K2530341_Student copy() {
+        return copyStateTo(new K2530341_Student(getUserId(), getName(), getEmail(),
+                                              getContactNumber(), getCurrentBorrowCount()));
+    }
 }
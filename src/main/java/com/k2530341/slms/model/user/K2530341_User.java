@@ -65,6 +65,24 @@ public abstract class K2530341_User implements K2530341_Observer {
         notifications.clear();
     }
     
+    /**
+     * Copy the user, including unpaid fines and received notifications.
+     * @return Detached copy of the same user type
+     */
+    public abstract K2530341_User copy();
+    
+    /**
+     * Carry over the fields the subclass constructors do not take.
+     * @param copy Freshly constructed copy of this user
+     * @return The same copy
+     */
+    protected <T extends K2530341_User> T copyStateTo(T copy) {
+        K2530341_User target = copy;
+        target.unpaidFines = unpaidFines;
+        target.notifications.addAll(notifications);
+        return copy;
+    }
+    
     /**
      * Abstract method to get borrow limit based on user type.
      * @return Maximum number of books that can be borrowed
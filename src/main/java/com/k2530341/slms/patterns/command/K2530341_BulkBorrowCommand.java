@@ -0,0 +1,62 @@
+package com.k2530341.slms.patterns.command;
+
+import com.k2530341.slms.service.K2530341_LibraryService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command for borrowing a stack of books for one user as a single batch.
+ * Undo returns every book the batch checked out, again as one batch.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_BulkBorrowCommand implements K2530341_Command {
+    private final K2530341_LibraryService libraryService;
+    private final String userId;
+    private final List<String> bookIds;
+    private Map<String, String> results = Collections.emptyMap();
+    private final List<String> borrowIds = new ArrayList<>();
+    private boolean executed = false;
+    
+    public K2530341_BulkBorrowCommand(K2530341_LibraryService libraryService, String userId, List<String> bookIds) {
+        this.libraryService = libraryService;
+        this.userId = userId;
+        this.bookIds = List.copyOf(bookIds);
+    }
+    
+    @Override
+    public boolean execute() {
+        results = libraryService.borrowBooks(userId, bookIds);
+        borrowIds.clear();
+        for (String result : results.values()) {
+            // Borrow IDs only - not null and not an error code
+            if (result != null && !result.equals("LIMIT_EXCEEDED") && !result.equals("FINE_LIMIT_EXCEEDED")) {
+                borrowIds.add(result);
+            }
+        }
+        executed = !borrowIds.isEmpty();
+        return executed;
+    }
+    
+    @Override
+    public void undo() {
+        if (executed) {
+            libraryService.returnBooks(borrowIds);
+            executed = false;
+        }
+    }
+    
+    /**
+     * @return Result per book ID, as {@link K2530341_LibraryService#borrowBooks}
+     */
+    public Map<String, String> getResults() {
+        return results;
+    }
+    
+    @Override
+    public String getDescription() {
+        return "Borrow " + bookIds.size() + " books for user " + userId;
+    }
+}
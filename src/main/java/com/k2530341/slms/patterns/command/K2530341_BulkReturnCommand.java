@@ -0,0 +1,70 @@
+package com.k2530341.slms.patterns.command;
+
+import com.k2530341.slms.service.K2530341_LibraryService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command for returning a stack of books as a single batch.
+ * Undo re-borrows the returned copies for the same users with their
+ * original due dates, again as one batch.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_BulkReturnCommand implements K2530341_Command {
+    private final K2530341_LibraryService libraryService;
+    private final List<String> borrowIds;
+    private Map<String, Boolean> results = Collections.emptyMap();
+    private Map<String, Boolean> undoResults = Collections.emptyMap();
+    private final List<String> returnedIds = new ArrayList<>();
+    private boolean executed = false;
+    
+    public K2530341_BulkReturnCommand(K2530341_LibraryService libraryService, List<String> borrowIds) {
+        this.libraryService = libraryService;
+        this.borrowIds = List.copyOf(borrowIds);
+    }
+    
+    @Override
+    public boolean execute() {
+        results = libraryService.returnBooks(borrowIds);
+        returnedIds.clear();
+        results.forEach((borrowId, returned) -> {
+            if (returned) {
+                returnedIds.add(borrowId);
+            }
+        });
+        executed = !returnedIds.isEmpty();
+        return executed;
+    }
+    
+    @Override
+    public void undo() {
+        if (executed) {
+            undoResults = libraryService.reopenBorrows(returnedIds);
+            executed = false;
+        }
+    }
+    
+    /**
+     * @return Result per borrow ID, as {@link K2530341_LibraryService#returnBooks}
+     */
+    public Map<String, Boolean> getResults() {
+        return results;
+    }
+    
+    /**
+     * @return Result per returned borrow ID of the last undo, as
+     *         {@link K2530341_LibraryService#reopenBorrows} (false where the copy had moved
+     *         on or the fine it charged was paid)
+     */
+    public Map<String, Boolean> getUndoResults() {
+        return undoResults;
+    }
+    
+    @Override
+    public String getDescription() {
+        return "Return " + borrowIds.size() + " borrows";
+    }
+}
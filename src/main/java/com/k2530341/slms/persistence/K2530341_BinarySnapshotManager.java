@@ -0,0 +1,369 @@
+package com.k2530341.slms.persistence;
+
+import com.k2530341.slms.model.K2530341_Borrow;
+import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
+import com.k2530341.slms.model.book.K2530341_Book;
+import com.k2530341.slms.model.notification.K2530341_Notification;
+import com.k2530341.slms.model.notification.K2530341_NotificationType;
+import com.k2530341.slms.model.reservation.K2530341_Reservation;
+import com.k2530341.slms.model.reservation.K2530341_ReservationStatus;
+import com.k2530341.slms.model.user.*;
+import com.k2530341.slms.patterns.builder.K2530341_BookBuilder;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Binary snapshot of every table in one file (snapshot.bin).
+ * Layout: magic, version, string table, then one length-prefixed section per
+ * table in {@link K2530341_DataTable} order. Strings are stored once in the
+ * string table and referenced by index (-1 for null), dates as epoch-days,
+ * date-times as epoch-seconds and enums as ordinals.
+ * The file is read through a memory-mapped FileChannel.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_BinarySnapshotManager {
+    private static final String FILE_NAME = "snapshot.bin";
+    private static final int MAGIC = 0x534C4D53; // "SLMS"
+    private static final int VERSION = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final long NO_DATE_TIME = Long.MIN_VALUE;
+    
+    private final String dataDir;
+    private final Path snapshotFile;
+    
+    /**
+     * Entities read from a snapshot, one list per table.
+     */
+    public static class Snapshot {
+        public final List<K2530341_Book> books = new ArrayList<>();
+        public final List<K2530341_User> users = new ArrayList<>();
+        public final List<K2530341_Borrow> borrows = new ArrayList<>();
+        public final List<K2530341_Reservation> reservations = new ArrayList<>();
+        public final List<K2530341_Notification> notifications = new ArrayList<>();
+    }
+    
+    public K2530341_BinarySnapshotManager() {
+        this("data");
+    }
+    
+    public K2530341_BinarySnapshotManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.snapshotFile = Paths.get(dataDir, FILE_NAME);
+    }
+    
+    /**
+     * Check whether a binary snapshot has been written yet.
+     * @return true if the snapshot file exists
+     */
+    public boolean exists() {
+        return Files.exists(snapshotFile);
+    }
+    
+    /**
+     * Encode all entities into the snapshot format.
+     * Runs on the caller's thread so the bytes can be written later without
+     * touching the (mutable) entities again.
+     * @return Encoded snapshot
+     */
+    public byte[] encode(Collection<K2530341_Book> books, Collection<K2530341_User> users,
+                         Collection<K2530341_Borrow> borrows, Collection<K2530341_Reservation> reservations,
+                         Collection<K2530341_Notification> notifications) {
+        try {
+            StringTable strings = new StringTable();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            
+            writeSection(out, books.size(), section -> {
+                for (K2530341_Book book : books) {
+                    section.writeInt(strings.indexOf(book.getBookId()));
+                    section.writeInt(strings.indexOf(book.getTitle()));
+                    section.writeInt(strings.indexOf(book.getAuthor()));
+                    section.writeInt(strings.indexOf(book.getCategory()));
+                    section.writeInt(strings.indexOf(book.getIsbn()));
+                    section.writeByte(book.getAvailabilityStatus().ordinal());
+                    section.writeInt(book.getBorrowHistoryCount());
+                    section.writeInt(strings.indexOf(book.getOptionalTags()));
+                    section.writeInt(strings.indexOf(book.getEdition()));
+                }
+            });
+            writeSection(out, users.size(), section -> {
+                for (K2530341_User user : users) {
+                    section.writeInt(strings.indexOf(user.getUserId()));
+                    section.writeInt(strings.indexOf(user.getName()));
+                    section.writeInt(strings.indexOf(user.getEmail()));
+                    section.writeInt(strings.indexOf(user.getContactNumber()));
+                    section.writeByte(user.getMembershipType().ordinal());
+                    section.writeInt(user.getCurrentBorrowCount());
+                }
+            });
+            writeSection(out, borrows.size(), section -> {
+                for (K2530341_Borrow borrow : borrows) {
+                    section.writeInt(strings.indexOf(borrow.getBorrowId()));
+                    section.writeInt(strings.indexOf(borrow.getBookId()));
+                    section.writeInt(strings.indexOf(borrow.getUserId()));
+                    section.writeInt(toEpochDay(borrow.getBorrowDate()));
+                    section.writeInt(toEpochDay(borrow.getDueDate()));
+                    section.writeInt(toEpochDay(borrow.getReturnDate()));
+                    section.writeDouble(borrow.getFinePaid());
+                }
+            });
+            writeSection(out, reservations.size(), section -> {
+                for (K2530341_Reservation reservation : reservations) {
+                    section.writeInt(strings.indexOf(reservation.getReservationId()));
+                    section.writeInt(strings.indexOf(reservation.getBookId()));
+                    section.writeInt(strings.indexOf(reservation.getUserId()));
+                    section.writeLong(toEpochSecond(reservation.getReservationDate()));
+                    section.writeLong(toEpochSecond(reservation.getNotifiedAt()));
+                    section.writeByte(reservation.getStatus().ordinal());
+                }
+            });
+            writeSection(out, notifications.size(), section -> {
+                for (K2530341_Notification notification : notifications) {
+                    section.writeInt(strings.indexOf(notification.getNotificationId()));
+                    section.writeInt(strings.indexOf(notification.getUserId()));
+                    section.writeByte(notification.getType().ordinal());
+                    section.writeInt(strings.indexOf(notification.getMessage()));
+                    section.writeInt(toEpochDay(notification.getDate()));
+                    section.writeBoolean(notification.isReadFlag());
+                }
+            });
+            out.flush();
+            
+            ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() + strings.byteSize() + 16);
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            strings.writeTo(header);
+            header.flush();
+            body.writeTo(file);
+            return file.toByteArray();
+        } catch (IOException e) {
+            // Only possible from the in-memory streams
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Write an encoded snapshot to disk (temp file forced to disk + atomic rename).
+     * @param snapshot Bytes from {@link #encode}
+     * @return Number of bytes written, or 0 if the save failed
+     */
+    public long write(byte[] snapshot) {
+        try {
+            Files.createDirectories(Paths.get(dataDir));
+            Path tempFile = Paths.get(snapshotFile + ".tmp");
+            Files.write(tempFile, snapshot);
+            K2530341_DurableFiles.replace(tempFile, snapshotFile);
+            return snapshot.length;
+        } catch (Exception e) {
+            System.err.println("Error saving binary snapshot: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * Read the snapshot through a memory-mapped file.
+     * @param stats Receives the decode time of each table (may be null)
+     * @return Loaded entities, empty if there is no snapshot or it is unreadable
+     */
+    public Snapshot load(K2530341_PersistenceStats stats) {
+        Snapshot snapshot = new Snapshot();
+        if (!exists()) {
+            return snapshot;
+        }
+        
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                System.err.println("Error loading binary snapshot: unsupported file format");
+                return snapshot;
+            }
+            
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            
+            K2530341_AvailabilityStatus[] availability = K2530341_AvailabilityStatus.values();
+            K2530341_MembershipType[] membership = K2530341_MembershipType.values();
+            K2530341_ReservationStatus[] reservationStatus = K2530341_ReservationStatus.values();
+            K2530341_NotificationType[] notificationType = K2530341_NotificationType.values();
+            
+            long start = System.nanoTime();
+            int count = readSectionHeader(buffer);
+            for (int i = 0; i < count; i++) {
+                snapshot.books.add(new K2530341_BookBuilder()
+                    .setBookId(string(strings, buffer.getInt()))
+                    .setTitle(string(strings, buffer.getInt()))
+                    .setAuthor(string(strings, buffer.getInt()))
+                    .setCategory(string(strings, buffer.getInt()))
+                    .setIsbn(string(strings, buffer.getInt()))
+                    .setAvailabilityStatus(availability[buffer.get()])
+                    .setBorrowHistoryCount(buffer.getInt())
+                    .setOptionalTags(string(strings, buffer.getInt()))
+                    .setEdition(string(strings, buffer.getInt()))
+                    .build());
+            }
+            start = recordLoad(stats, K2530341_DataTable.BOOKS, count, start);
+            
+            count = readSectionHeader(buffer);
+            for (int i = 0; i < count; i++) {
+                String userId = string(strings, buffer.getInt());
+                String name = string(strings, buffer.getInt());
+                String email = string(strings, buffer.getInt());
+                String contactNumber = string(strings, buffer.getInt());
+                K2530341_MembershipType type = membership[buffer.get()];
+                int currentBorrowCount = buffer.getInt();
+                switch (type) {
+                    case STUDENT:
+                        snapshot.users.add(new K2530341_Student(userId, name, email, contactNumber, currentBorrowCount));
+                        break;
+                    case FACULTY:
+                        snapshot.users.add(new K2530341_Faculty(userId, name, email, contactNumber, currentBorrowCount));
+                        break;
+                    case GUEST:
+                        snapshot.users.add(new K2530341_Guest(userId, name, email, contactNumber, currentBorrowCount));
+                        break;
+                }
+            }
+            start = recordLoad(stats, K2530341_DataTable.USERS, count, start);
+            
+            count = readSectionHeader(buffer);
+            for (int i = 0; i < count; i++) {
+                snapshot.borrows.add(new K2530341_Borrow(
+                    string(strings, buffer.getInt()), // borrowId
+                    string(strings, buffer.getInt()), // bookId
+                    string(strings, buffer.getInt()), // userId
+                    fromEpochDay(buffer.getInt()), // borrowDate
+                    fromEpochDay(buffer.getInt()), // dueDate
+                    fromEpochDay(buffer.getInt()), // returnDate
+                    buffer.getDouble() // finePaid
+                ));
+            }
+            start = recordLoad(stats, K2530341_DataTable.BORROWS, count, start);
+            
+            count = readSectionHeader(buffer);
+            for (int i = 0; i < count; i++) {
+                snapshot.reservations.add(new K2530341_Reservation(
+                    string(strings, buffer.getInt()), // reservationId
+                    string(strings, buffer.getInt()), // bookId
+                    string(strings, buffer.getInt()), // userId
+                    fromEpochSecond(buffer.getLong()), // reservationDate
+                    fromEpochSecond(buffer.getLong()), // notifiedAt
+                    reservationStatus[buffer.get()] // status
+                ));
+            }
+            start = recordLoad(stats, K2530341_DataTable.RESERVATIONS, count, start);
+            
+            count = readSectionHeader(buffer);
+            for (int i = 0; i < count; i++) {
+                snapshot.notifications.add(new K2530341_Notification(
+                    string(strings, buffer.getInt()), // notificationId
+                    string(strings, buffer.getInt()), // userId
+                    notificationType[buffer.get()], // type
+                    string(strings, buffer.getInt()), // message
+                    fromEpochDay(buffer.getInt()), // date
+                    buffer.get() != 0 // readFlag
+                ));
+            }
+            recordLoad(stats, K2530341_DataTable.NOTIFICATIONS, count, start);
+        } catch (Exception e) {
+            System.err.println("Error loading binary snapshot: " + e.getMessage());
+        }
+        return snapshot;
+    }
+    
+    private interface SectionWriter {
+        void write(DataOutputStream section) throws IOException;
+    }
+    
+    // section = row count, byte length, rows
+    private static void writeSection(DataOutputStream out, int count, SectionWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream section = new DataOutputStream(bytes);
+        writer.write(section);
+        section.flush();
+        out.writeInt(count);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+    
+    private static int readSectionHeader(MappedByteBuffer buffer) {
+        int count = buffer.getInt();
+        buffer.getInt(); // byte length - only needed by readers that skip sections
+        return count;
+    }
+    
+    private static long recordLoad(K2530341_PersistenceStats stats, K2530341_DataTable table, int rows, long start) {
+        long now = System.nanoTime();
+        if (stats != null) {
+            stats.recordLoad(table, rows, (now - start) / 1_000_000);
+        }
+        return now;
+    }
+    
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+    
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+    
+    private static LocalDate fromEpochDay(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+    
+    // same precision as the CSV format (whole seconds)
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime == null ? NO_DATE_TIME : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+    
+    private static LocalDateTime fromEpochSecond(long epochSecond) {
+        return epochSecond == NO_DATE_TIME ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+    
+    // deduplicated strings, written as count + (length, UTF-8 bytes) each
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int byteSize = 4;
+        
+        int indexOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = encoded.size();
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                byteSize += 4 + bytes.length;
+                indexes.put(value, index);
+            }
+            return index;
+        }
+        
+        int byteSize() {
+            return byteSize;
+        }
+        
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(encoded.size());
+            for (byte[] bytes : encoded) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.k2530341.slms.persistence;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.k2530341.slms.model.book.K2530341_Book;
 import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
@@ -9,14 +8,28 @@ import com.k2530341.slms.patterns.builder.K2530341_BookBuilder;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-
+import java.util.function.Consumer;
+ 
  //CSV persistence manager for books with atomic write operations.
 public class K2530341_BookCSVManager {
-    private static final String CSV_FILE = "data/books.csv";
+    private static final String FILE_NAME = "books.csv";
     private static final String[] HEADER = {
         "bookId", "title", "author", "category", "isbn", 
         "availabilityStatus", "borrowHistoryCount", "optionalTags", "edition"
     };
+    private static final K2530341_AvailabilityStatus[] STATUSES = K2530341_AvailabilityStatus.values();
+    
+    private final String dataDir;
+    private final String csvFile;
+    
+    public K2530341_BookCSVManager() {
+        this("data");
+    }
+    
+    public K2530341_BookCSVManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.csvFile = Paths.get(dataDir, FILE_NAME).toString();
+    }
     
     /**
      * Load all books from CSV file.
@@ -24,83 +37,138 @@ public class K2530341_BookCSVManager {
      */
     public List<K2530341_Book> loadBooks() {
         List<K2530341_Book> books = new ArrayList<>();
-        File file = new File(CSV_FILE);
+        loadBooks(books::add);
+        return books;
+    }
+    
+    /**
+     * Stream all books from the CSV file to a callback, without building a list first.
+     * @param consumer Receives each book
+     */
+    public void loadBooks(Consumer<K2530341_Book> consumer) {
+        Path file = Paths.get(csvFile);
         
-        if (!file.exists()) {
-            return books;
+        if (!Files.exists(file)) {
+            return;
         }
         
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            String[] line;
-            boolean firstLine = true;
-            
-            while ((line = reader.readNext()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
-                }
-                
-                if (line.length >= 9) {
-                    K2530341_Book book = new K2530341_BookBuilder()
-                        .setBookId(line[0])
-                        .setTitle(line[1])
-                        .setAuthor(line[2])
-                        .setCategory(line[3])
-                        .setIsbn(line[4])
-                        .setAvailabilityStatus(K2530341_AvailabilityStatus.valueOf(line[5]))
-                        .setBorrowHistoryCount(Integer.parseInt(line[6]))
-                        .setOptionalTags(line[7])
-                        .setEdition(line[8])
-                        .build();
-                    books.add(book);
+        try {
+            K2530341_CsvStreamParser.parse(file, true, row -> {
+                K2530341_Book book = fromRow(row);
+                if (book != null) {
+                    consumer.accept(book);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("Error loading books: " + e.getMessage());
         }
-        
-        return books;
+    }
+    
+    /**
+     * Convert a CSV row into a book.
+     * @param line CSV fields
+     * @return The book, or null if the row is incomplete
+     */
+    public K2530341_Book fromRow(String[] line) {
+        if (line.length < 9) {
+            return null;
+        }
+        return new K2530341_BookBuilder()
+            .setBookId(line[0])
+            .setTitle(line[1])
+            .setAuthor(line[2])
+            .setCategory(line[3])
+            .setIsbn(line[4])
+            .setAvailabilityStatus(K2530341_AvailabilityStatus.valueOf(line[5]))
+            .setBorrowHistoryCount(Integer.parseInt(line[6]))
+            .setOptionalTags(line[7])
+            .setEdition(line[8])
+            .build();
+    }
+    
+    /**
+     * Convert a row from the streaming parser into a book.
+     * @param row Parsed CSV row
+     * @return The book, or null if the row is incomplete
+     */
+    public K2530341_Book fromRow(K2530341_CsvStreamParser.Row row) {
+        if (row.size() < 9) {
+            return null;
+        }
+        return new K2530341_BookBuilder()
+            .setBookId(row.getString(0))
+            .setTitle(row.getString(1))
+            .setAuthor(row.getString(2))
+            .setCategory(row.getString(3))
+            .setIsbn(row.getString(4))
+            .setAvailabilityStatus(row.getEnum(5, STATUSES))
+            .setBorrowHistoryCount(row.getInt(6))
+            .setOptionalTags(row.getString(7))
+            .setEdition(row.getString(8))
+            .build();
+    }
+    
+    /**
+     * Convert a book into its CSV row.
+     * @param book Book to convert
+     * @return CSV fields
+     */
+    public String[] toRow(K2530341_Book book) {
+        return new String[] {
+            book.getBookId(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getCategory(),
+            book.getIsbn(),
+            book.getAvailabilityStatus().toString(),
+            String.valueOf(book.getBorrowHistoryCount()),
+            book.getOptionalTags(),
+            book.getEdition()
+        };
     }
     
     /**
      * Save all books to CSV file with atomic write operation.
      * @param books List of books to save
+     * @return Number of bytes written, or 0 if the save failed
      */
-    public void saveBooks(List<K2530341_Book> books) {
+    public long saveBooks(List<K2530341_Book> books) {
+        List<String[]> rows = new ArrayList<>(books.size());
+        for (K2530341_Book book : books) {
+            rows.add(toRow(book));
+        }
+        return saveRows(rows);
+    }
+    
+    /**
+     * Save already converted book rows with atomic write operation.
+     * @param rows CSV rows to save (without header)
+     * @return Number of bytes written, or 0 if the save failed
+     */
+    public long saveRows(List<String[]> rows) {
         try {
             // Ensure directory exists
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(Paths.get(dataDir));
             
             // Write to temporary file first
-            String tempFile = CSV_FILE + ".tmp";
+            String tempFile = csvFile + ".tmp";
             try (CSVWriter writer = new CSVWriter(new FileWriter(tempFile))) {
                 // Write header
                 writer.writeNext(HEADER);
                 
                 // Write book data
-                for (K2530341_Book book : books) {
-                    String[] line = {
-                        book.getBookId(),
-                        book.getTitle(),
-                        book.getAuthor(),
-                        book.getCategory(),
-                        book.getIsbn(),
-                        book.getAvailabilityStatus().toString(),
-                        String.valueOf(book.getBorrowHistoryCount()),
-                        book.getOptionalTags(),
-                        book.getEdition()
-                    };
+                for (String[] line : rows) {
                     writer.writeNext(line);
                 }
             }
             
-            // Atomic rename
-            Files.move(Paths.get(tempFile), Paths.get(CSV_FILE), 
-                      StandardCopyOption.REPLACE_EXISTING, 
-                      StandardCopyOption.ATOMIC_MOVE);
-                      
+            // Force to disk, then atomic rename
+            K2530341_DurableFiles.replace(Paths.get(tempFile), Paths.get(csvFile));
+            
+            return Files.size(Paths.get(csvFile));
         } catch (Exception e) {
             System.err.println("Error saving books: " + e.getMessage());
+            return 0;
         }
     }
 }
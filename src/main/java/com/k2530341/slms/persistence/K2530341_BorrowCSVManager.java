@@ -1,6 +1,5 @@
 package com.k2530341.slms.persistence;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.k2530341.slms.model.K2530341_Borrow;
 
@@ -9,99 +8,165 @@ import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * CSV persistence manager for borrow records with atomic write operations.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_BorrowCSVManager {
-    private static final String CSV_FILE = "data/borrows.csv";
+    private static final String FILE_NAME = "borrows.csv";
     private static final String[] HEADER = {
         "borrowId", "bookId", "userId", "borrowDateISO", "dueDateISO", "returnDateISO", "finePaid"
     };
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
+    private final String dataDir;
+    private final String csvFile;
+    
+    public K2530341_BorrowCSVManager() {
+        this("data");
+    }
+    
+    public K2530341_BorrowCSVManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.csvFile = Paths.get(dataDir, FILE_NAME).toString();
+    }
+    
     /**
      * Load all borrow records from CSV file.
      * @return List of borrow records
      */
     public List<K2530341_Borrow> loadBorrows() {
         List<K2530341_Borrow> borrows = new ArrayList<>();
-        File file = new File(CSV_FILE);
+        loadBorrows(borrows::add);
+        return borrows;
+    }
+    
+    /**
+     * Stream all borrow records from the CSV file to a callback, without building a list first.
+     * @param consumer Receives each borrow record
+     */
+    public void loadBorrows(Consumer<K2530341_Borrow> consumer) {
+        Path file = Paths.get(csvFile);
         
-        if (!file.exists()) {
-            return borrows;
+        if (!Files.exists(file)) {
+            return;
         }
         
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            String[] line;
-            boolean firstLine = true;
-            
-            while ((line = reader.readNext()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
-                }
-                
-                if (line.length >= 7) {
-                    LocalDate returnDate = line[5].isEmpty() ? null : LocalDate.parse(line[5], DATE_FORMATTER);
-                    
-                    K2530341_Borrow borrow = new K2530341_Borrow(
-                        line[0], // borrowId
-                        line[1], // bookId
-                        line[2], // userId
-                        LocalDate.parse(line[3], DATE_FORMATTER), // borrowDate
-                        LocalDate.parse(line[4], DATE_FORMATTER), // dueDate
-                        returnDate, // returnDate
-                        Double.parseDouble(line[6]) // finePaid
-                    );
-                    borrows.add(borrow);
+        try {
+            K2530341_CsvStreamParser.parse(file, true, row -> {
+                K2530341_Borrow borrow = fromRow(row);
+                if (borrow != null) {
+                    consumer.accept(borrow);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("Error loading borrows: " + e.getMessage());
         }
+    }
+    
+    /**
+     * Convert a CSV row into a borrow record.
+     * @param line CSV fields
+     * @return The borrow record, or null if the row is incomplete
+     */
+    public K2530341_Borrow fromRow(String[] line) {
+        if (line.length < 7) {
+            return null;
+        }
+        LocalDate returnDate = line[5].isEmpty() ? null : LocalDate.parse(line[5], DATE_FORMATTER);
         
-        return borrows;
+        return new K2530341_Borrow(
+            line[0], // borrowId
+            line[1], // bookId
+            line[2], // userId
+            LocalDate.parse(line[3], DATE_FORMATTER), // borrowDate
+            LocalDate.parse(line[4], DATE_FORMATTER), // dueDate
+            returnDate, // returnDate
+            Double.parseDouble(line[6]) // finePaid
+        );
+    }
+    
+    /**
+     * Convert a row from the streaming parser into a borrow record.
+     * @param row Parsed CSV row
+     * @return The borrow record, or null if the row is incomplete
+     */
+    public K2530341_Borrow fromRow(K2530341_CsvStreamParser.Row row) {
+        if (row.size() < 7) {
+            return null;
+        }
+        return new K2530341_Borrow(
+            row.getString(0), // borrowId
+            row.getString(1), // bookId
+            row.getString(2), // userId
+            row.getDate(3), // borrowDate
+            row.getDate(4), // dueDate
+            row.getDate(5), // returnDate (null when empty)
+            row.getDouble(6) // finePaid
+        );
+    }
+    
+    /**
+     * Convert a borrow record into its CSV row.
+     * @param borrow Borrow record to convert
+     * @return CSV fields
+     */
+    public String[] toRow(K2530341_Borrow borrow) {
+        return new String[] {
+            borrow.getBorrowId(),
+            borrow.getBookId(),
+            borrow.getUserId(),
+            borrow.getBorrowDate().format(DATE_FORMATTER),
+            borrow.getDueDate().format(DATE_FORMATTER),
+            borrow.getReturnDate() != null ? borrow.getReturnDate().format(DATE_FORMATTER) : "",
+            String.valueOf(borrow.getFinePaid())
+        };
     }
     
     /**
      * Save all borrow records to CSV file with atomic write operation.
      * @param borrows List of borrow records to save
+     * @return Number of bytes written, or 0 if the save failed
      */
-    public void saveBorrows(List<K2530341_Borrow> borrows) {
+    public long saveBorrows(List<K2530341_Borrow> borrows) {
+        List<String[]> rows = new ArrayList<>(borrows.size());
+        for (K2530341_Borrow borrow : borrows) {
+            rows.add(toRow(borrow));
+        }
+        return saveRows(rows);
+    }
+    
+    /**
+     * Save already converted borrow rows with atomic write operation.
+     * @param rows CSV rows to save (without header)
+     * @return Number of bytes written, or 0 if the save failed
+     */
+    public long saveRows(List<String[]> rows) {
         try {
             // Ensure directory exists
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(Paths.get(dataDir));
             
             // Write to temporary file first
-            String tempFile = CSV_FILE + ".tmp";
+            String tempFile = csvFile + ".tmp";
             try (CSVWriter writer = new CSVWriter(new FileWriter(tempFile))) {
                 // Write header
                 writer.writeNext(HEADER);
                 
                 // Write borrow data
-                for (K2530341_Borrow borrow : borrows) {
-                    String[] line = {
-                        borrow.getBorrowId(),
-                        borrow.getBookId(),
-                        borrow.getUserId(),
-                        borrow.getBorrowDate().format(DATE_FORMATTER),
-                        borrow.getDueDate().format(DATE_FORMATTER),
-                        borrow.getReturnDate() != null ? borrow.getReturnDate().format(DATE_FORMATTER) : "",
-                        String.valueOf(borrow.getFinePaid())
-                    };
+                for (String[] line : rows) {
                     writer.writeNext(line);
                 }
             }
             
-            // Atomic rename
-            Files.move(Paths.get(tempFile), Paths.get(CSV_FILE), 
-                      StandardCopyOption.REPLACE_EXISTING, 
-                      StandardCopyOption.ATOMIC_MOVE);
-                      
+            // Force to disk, then atomic rename
+            K2530341_DurableFiles.replace(Paths.get(tempFile), Paths.get(csvFile));
+            
+            return Files.size(Paths.get(csvFile));
         } catch (Exception e) {
             System.err.println("Error saving borrows: " + e.getMessage());
+            return 0;
         }
     }
 }
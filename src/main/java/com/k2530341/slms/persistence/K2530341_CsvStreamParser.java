@@ -0,0 +1,362 @@
+package com.k2530341.slms.persistence;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for the CSV files written by the CSV managers.
+ * Reads the file through a large NIO channel buffer and hands every row to a
+ * callback. The row is reused between calls and keeps its fields as offsets
+ * into one char buffer, so dates, numbers and enums are parsed straight from
+ * the chars and a String is only created when a text field is asked for.
+ * Handles the OpenCSV quoting rules: quoted or bare fields, doubled quotes,
+ * and line breaks inside quotes.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_CsvStreamParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    // parser states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    
+    // exact powers of ten for the double fast path
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    /**
+     * Callback receiving each parsed row.
+     * The row is only valid during the call.
+     */
+    public interface RowHandler {
+        void handle(Row row);
+    }
+    
+    private K2530341_CsvStreamParser() {
+    }
+    
+    /**
+     * Parse a CSV file.
+     * @param file File to read
+     * @param skipHeader true to skip the first row
+     * @param handler Callback receiving each row
+     * @return Number of rows passed to the handler
+     * @throws IOException if the file cannot be read
+     */
+    public static long parse(Path file, boolean skipHeader, RowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE)) {
+            return parse(reader, skipHeader, handler);
+        }
+    }
+    
+    /**
+     * Parse CSV text from a reader.
+     * @param reader Source of the CSV text
+     * @param skipHeader true to skip the first row
+     * @param handler Callback receiving each row
+     * @return Number of rows passed to the handler
+     * @throws IOException if the reader fails
+     */
+    public static long parse(Reader reader, boolean skipHeader, RowHandler handler) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        Row row = new Row();
+        boolean skipNext = skipHeader;
+        long rows = 0;
+        int state = FIELD_START;
+        
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                switch (state) {
+                    case FIELD_START:
+                        if (c == '"') {
+                            state = QUOTED;
+                        } else if (c == ',') {
+                            row.endField();
+                        } else if (c == '\n') {
+                            if (row.size() > 0 || row.length > row.fieldStart) {
+                                row.endField();
+                                if (skipNext) {
+                                    skipNext = false;
+                                } else {
+                                    handler.handle(row);
+                                    rows++;
+                                }
+                            }
+                            row.reset(); // blank lines are skipped
+                        } else if (c != '\r') {
+                            row.append(c);
+                            state = UNQUOTED;
+                        }
+                        break;
+                    case QUOTED:
+                        if (c == '"') {
+                            state = QUOTE_IN_QUOTED;
+                        } else {
+                            row.append(c);
+                        }
+                        break;
+                    case QUOTE_IN_QUOTED:
+                        if (c == '"') {
+                            row.append('"'); // doubled quote inside a quoted field
+                            state = QUOTED;
+                            break;
+                        }
+                        // fall through - the closing quote behaves like the end of a bare field
+                    case UNQUOTED:
+                        if (c == ',') {
+                            row.endField();
+                            state = FIELD_START;
+                        } else if (c == '\n') {
+                            row.endField();
+                            if (skipNext) {
+                                skipNext = false;
+                            } else {
+                                handler.handle(row);
+                                rows++;
+                            }
+                            row.reset();
+                            state = FIELD_START;
+                        } else if (c != '\r') {
+                            row.append(c);
+                            state = UNQUOTED;
+                        }
+                        break;
+                }
+            }
+        }
+        
+        // Last row without a trailing line break
+        if (state != FIELD_START || row.size() > 0) {
+            row.endField();
+            if (!skipNext) {
+                handler.handle(row);
+                rows++;
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * One CSV row. Fields are stored as offsets into a shared char buffer.
+     */
+    public static final class Row {
+        private char[] chars = new char[256];
+        private int length = 0;
+        private int fieldStart = 0;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count = 0;
+        
+        private void append(char c) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            chars[length++] = c;
+        }
+        
+        private void endField() {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = fieldStart;
+            ends[count] = length;
+            count++;
+            fieldStart = length;
+        }
+        
+        private void reset() {
+            length = 0;
+            fieldStart = 0;
+            count = 0;
+        }
+        
+        /**
+         * Get the number of fields in the row.
+         * @return Field count
+         */
+        public int size() {
+            return count;
+        }
+        
+        public boolean isEmpty(int field) {
+            return ends[field] == starts[field];
+        }
+        
+        public String getString(int field) {
+            return new String(chars, starts[field], ends[field] - starts[field]);
+        }
+        
+        /**
+         * Get the fields as an array of strings, like OpenCSV's readNext().
+         * @return Copy of every field
+         */
+        public String[] toArray() {
+            String[] fields = new String[count];
+            for (int i = 0; i < count; i++) {
+                fields[i] = getString(i);
+            }
+            return fields;
+        }
+        
+        public int getInt(int field) {
+            int pos = starts[field];
+            int end = ends[field];
+            boolean negative = pos < end && chars[pos] == '-';
+            if (negative || (pos < end && chars[pos] == '+')) {
+                pos++;
+            }
+            if (pos == end) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            long value = 0;
+            for (; pos < end; pos++) {
+                int digit = chars[pos] - '0';
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                    return Integer.parseInt(getString(field)); // reports the error
+                }
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                return Integer.parseInt(getString(field)); // reports the overflow
+            }
+            return (int) value;
+        }
+        
+        /**
+         * Parse the field as a double.
+         * Plain decimals with up to 15 significant digits (everything the
+         * managers write) are computed exactly from the chars; anything else
+         * goes through Double.parseDouble.
+         */
+        public double getDouble(int field) {
+            int pos = starts[field];
+            int end = ends[field];
+            boolean negative = pos < end && chars[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            long mantissa = 0;
+            boolean sawDigit = false;
+            int digits = 0;
+            int decimals = 0;
+            boolean seenPoint = false;
+            for (; pos < end; pos++) {
+                char c = chars[pos];
+                if (c == '.' && !seenPoint) {
+                    seenPoint = true;
+                } else if (c >= '0' && c <= '9') {
+                    sawDigit = true;
+                    if (mantissa != 0 || c != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (seenPoint) {
+                        decimals++;
+                    }
+                } else {
+                    return Double.parseDouble(getString(field));
+                }
+            }
+            if (!sawDigit || digits > 15 || decimals >= POWERS_OF_TEN.length) {
+                return Double.parseDouble(getString(field));
+            }
+            double value = mantissa / POWERS_OF_TEN[decimals];
+            return negative ? -value : value;
+        }
+        
+        public boolean getBoolean(int field) {
+            int pos = starts[field];
+            if (ends[field] - pos != 4) {
+                return false;
+            }
+            return (chars[pos] | 0x20) == 't' && (chars[pos + 1] | 0x20) == 'r'
+                && (chars[pos + 2] | 0x20) == 'u' && (chars[pos + 3] | 0x20) == 'e';
+        }
+        
+        /**
+         * Parse a yyyy-MM-dd field.
+         * @return Date, or null if the field is empty
+         */
+        public LocalDate getDate(int field) {
+            if (isEmpty(field)) {
+                return null;
+            }
+            int pos = starts[field];
+            if (ends[field] - pos != 10 || chars[pos + 4] != '-' || chars[pos + 7] != '-') {
+                return LocalDate.parse(getString(field));
+            }
+            return LocalDate.of(digits(pos, 4), digits(pos + 5, 2), digits(pos + 8, 2));
+        }
+        
+        /**
+         * Parse a yyyy-MM-dd'T'HH:mm:ss field.
+         * @return Date-time, or null if the field is empty
+         */
+        public LocalDateTime getDateTime(int field) {
+            if (isEmpty(field)) {
+                return null;
+            }
+            int pos = starts[field];
+            if (ends[field] - pos != 19 || chars[pos + 4] != '-' || chars[pos + 7] != '-'
+                    || chars[pos + 10] != 'T' || chars[pos + 13] != ':' || chars[pos + 16] != ':') {
+                return LocalDateTime.parse(getString(field));
+            }
+            return LocalDateTime.of(digits(pos, 4), digits(pos + 5, 2), digits(pos + 8, 2),
+                digits(pos + 11, 2), digits(pos + 14, 2), digits(pos + 17, 2));
+        }
+        
+        /**
+         * Match the field against enum constant names without creating a String.
+         * @param values Constants of the enum (e.g. a cached values() array)
+         * @return Matching constant
+         * @throws IllegalArgumentException if no constant matches
+         */
+        public <E extends Enum<E>> E getEnum(int field, E[] values) {
+            int pos = starts[field];
+            int len = ends[field] - pos;
+            for (E value : values) {
+                String name = value.name();
+                if (name.length() != len) {
+                    continue;
+                }
+                int i = 0;
+                while (i < len && name.charAt(i) == chars[pos + i]) {
+                    i++;
+                }
+                if (i == len) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("No enum constant " + getString(field));
+        }
+        
+        private int digits(int pos, int len) {
+            int value = 0;
+            for (int i = pos; i < pos + len; i++) {
+                int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Invalid digit in " + new String(chars, pos, len));
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+    }
+}
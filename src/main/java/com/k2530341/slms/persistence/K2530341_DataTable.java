@@ -0,0 +1,14 @@
+package com.k2530341.slms.persistence;
+
+/**
+ * Enum of the data tables that are persisted to the data directory.
+ * Used by the service to track which tables changed since the last save.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public enum K2530341_DataTable {
+    BOOKS,
+    USERS,
+    BORROWS,
+    RESERVATIONS,
+    NOTIFICATIONS
+}
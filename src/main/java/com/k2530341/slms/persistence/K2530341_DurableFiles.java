@@ -0,0 +1,43 @@
+package com.k2530341.slms.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Durable replace of a snapshot file: the temp file is forced to disk
+ * before it is renamed over the target, and the directory afterwards, so a
+ * snapshot is really on disk by the time the journal segment it replaces
+ * is deleted.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+final class K2530341_DurableFiles {
+    
+    private K2530341_DurableFiles() {
+    }
+    
+    /**
+     * Force a fully written temp file to disk and atomically rename it over the target.
+     * @param tempFile Temp file holding the new contents
+     * @param target File to replace
+     * @throws IOException If the file could not be forced or renamed
+     */
+    static void replace(Path tempFile, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, target,
+                  StandardCopyOption.REPLACE_EXISTING,
+                  StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+    
+    // make the rename itself durable; some platforms (e.g. Windows) cannot open a directory, and skip it
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directory sync not supported here - the rename is still atomic
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.k2530341.slms.persistence;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * High-water marks of the ID sequences (id_sequences.properties), one line
+ * per prefix, e.g. "BK-=33". A mark is the first number not yet handed out,
+ * so the allocator can resume from it without scanning the loaded rows.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_IdSequenceManager {
+    private static final String FILE_NAME = "id_sequences.properties";
+    
+    private final String dataDir;
+    private final Path sequenceFile;
+    
+    public K2530341_IdSequenceManager() {
+        this("data");
+    }
+    
+    public K2530341_IdSequenceManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.sequenceFile = Paths.get(dataDir, FILE_NAME);
+    }
+    
+    /**
+     * Read the stored marks.
+     * @return Mark per prefix, or null if none have been written yet (or the file is unreadable)
+     */
+    public Map<String, Integer> load() {
+        if (!Files.exists(sequenceFile)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(sequenceFile, StandardCharsets.UTF_8)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            Map<String, Integer> marks = new HashMap<>();
+            for (String prefix : properties.stringPropertyNames()) {
+                marks.put(prefix, Integer.parseInt(properties.getProperty(prefix).trim()));
+            }
+            return marks;
+        } catch (Exception e) {
+            System.err.println("Error loading ID sequences: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Write the marks (temp file + atomic rename).
+     * @param marks Mark per prefix
+     * @return true if the marks were saved
+     */
+    public boolean save(Map<String, Integer> marks) {
+        try {
+            Files.createDirectories(Paths.get(dataDir));
+            Properties properties = new Properties();
+            marks.forEach((prefix, mark) -> properties.setProperty(prefix, String.valueOf(mark)));
+            Path tempFile = Paths.get(sequenceFile + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, "SLMS ID high-water marks");
+            }
+            Files.move(tempFile, sequenceFile,
+                      StandardCopyOption.REPLACE_EXISTING,
+                      StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving ID sequences: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.k2530341.slms.persistence;
+
+import java.util.*;
+
+/**
+ * Background thread that group-commits journal records.
+ * Records submitted within the flush window are coalesced (only the latest
+ * record per entity is kept) and appended to the journal in one write, so a
+ * burst of saves costs one disk write instead of one per save.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_JournalFlusher {
+    private final K2530341_JournalManager journal;
+    private final K2530341_PersistenceStats stats;
+    private final Thread thread;
+    
+    // latest record per "TABLE:id", in submission order
+    private Map<String, String[]> pending = new LinkedHashMap<>();
+    private final EnumSet<K2530341_DataTable> pendingTables = EnumSet.noneOf(K2530341_DataTable.class);
+    private long firstPendingAt;
+    private long windowMillis;
+    
+    // every submit gets a sequence number; durableSeq is the last one forced to disk
+    private long submittedSeq = 0;
+    private long durableSeq = 0;
+    private boolean flushRequested = false;
+    private boolean closed = false;
+    // set when the flusher thread exits, so waiters stop waiting for it
+    private boolean stopped = false;
+    
+    /**
+     * Create a flusher and start its thread.
+     * @param journal Journal the records are appended to
+     * @param stats Statistics updated after each write
+     * @param windowMillis How long to wait for more records before writing
+     */
+    public K2530341_JournalFlusher(K2530341_JournalManager journal, K2530341_PersistenceStats stats, long windowMillis) {
+        this.journal = journal;
+        this.stats = stats;
+        this.windowMillis = windowMillis;
+        this.thread = new Thread(this::run, "slms-journal-flusher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    /**
+     * Queue journal records for the next group commit.
+     * The records must already be serialized - the flusher never reads entities.
+     * @param tables Tables the records belong to
+     * @param records Journal records (see {@link K2530341_JournalManager#upsert})
+     */
+    public synchronized void submit(Set<K2530341_DataTable> tables, List<String[]> records) {
+        if (closed) {
+            System.err.println("Journal flusher is closed - writing records directly");
+            stats.recordFlush(tables, records.size(), journal.append(records));
+            return;
+        }
+        if (pending.isEmpty()) {
+            firstPendingAt = System.currentTimeMillis();
+        }
+        for (String[] record : records) {
+            String key = record[1] + ":" + record[2];
+            pending.remove(key); // keep the newest record at the end
+            pending.put(key, record);
+        }
+        pendingTables.addAll(tables);
+        submittedSeq++;
+        notifyAll();
+    }
+    
+    /**
+     * Write the pending records now and wait until they are on disk.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                flushRequested = true;
+                notifyAll();
+            }
+        }
+        awaitDurable();
+    }
+    
+    /**
+     * Wait until every record submitted so far is on disk,
+     * without cutting the current flush window short.
+     */
+    public synchronized void awaitDurable() {
+        long target = submittedSeq;
+        try {
+            // the flusher notifies after every write, and once more when it stops
+            while (durableSeq < target && !stopped) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Write whatever is pending and stop the flusher thread.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public synchronized void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+        notifyAll();
+    }
+    
+    public synchronized long getWindowMillis() {
+        return windowMillis;
+    }
+    
+    private void run() {
+        try {
+            while (true) {
+                List<String[]> batch;
+                EnumSet<K2530341_DataTable> tables;
+                long seq;
+                
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed) {
+                        wait();
+                    }
+                    if (pending.isEmpty()) {
+                        return; // closed and nothing left to write
+                    }
+                    // Give other saves in the same burst a chance to join this write
+                    long now = System.currentTimeMillis();
+                    while (!flushRequested && !closed && now < firstPendingAt + windowMillis) {
+                        wait(firstPendingAt + windowMillis - now);
+                        now = System.currentTimeMillis();
+                    }
+                    batch = new ArrayList<>(pending.values());
+                    pending = new LinkedHashMap<>();
+                    tables = EnumSet.copyOf(pendingTables);
+                    pendingTables.clear();
+                    flushRequested = false;
+                    seq = submittedSeq;
+                }
+                
+                // append() returns once the group is forced to disk - only then is it durable
+                long bytes = journal.append(batch);
+                stats.recordFlush(tables, batch.size(), bytes);
+                
+                synchronized (this) {
+                    durableSeq = seq;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                stopped = true;
+                notifyAll(); // release waiters - nothing more will be written for them
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.k2530341.slms.persistence;
+
+import com.opencsv.CSVWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Append-only journal of entity changes.
+ * Each record is one CSV line: operation, table, then the entity row (UPSERT)
+ * or only the entity ID (DELETE). The journal is replayed on top of the CSV
+ * snapshots at startup and folded into them by compaction.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_JournalManager {
+    public static final String OP_UPSERT = "UPSERT";
+    public static final String OP_DELETE = "DELETE";
+    
+    private static final String FILE_NAME = "journal.csv";
+    private static final String COMPACTING_FILE_NAME = "journal.compacting.csv";
+    
+    private final String dataDir;
+    private final Path journalFile;
+    private final Path compactingFile;
+    private long recordCount = 0;
+    // kept open across appends; closed when the journal is rotated or the service shuts down
+    private FileChannel channel;
+    
+    /**
+     * Callback used when replaying journal records.
+     */
+    public interface RecordHandler {
+        void apply(String operation, K2530341_DataTable table, String[] fields);
+    }
+    
+    public K2530341_JournalManager() {
+        this("data");
+    }
+    
+    public K2530341_JournalManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.journalFile = Paths.get(dataDir, FILE_NAME);
+        this.compactingFile = Paths.get(dataDir, COMPACTING_FILE_NAME);
+    }
+    
+    /**
+     * Build an UPSERT record for an entity row.
+     * @param table Table the row belongs to
+     * @param row CSV fields of the entity
+     * @return Journal record
+     */
+    public static String[] upsert(K2530341_DataTable table, String[] row) {
+        String[] record = new String[row.length + 2];
+        record[0] = OP_UPSERT;
+        record[1] = table.name();
+        System.arraycopy(row, 0, record, 2, row.length);
+        return record;
+    }
+    
+    /**
+     * Build a DELETE record for an entity ID.
+     * @param table Table the entity belongs to
+     * @param id Entity ID
+     * @return Journal record
+     */
+    public static String[] delete(K2530341_DataTable table, String id) {
+        return new String[] {OP_DELETE, table.name(), id};
+    }
+    
+    /**
+     * Append records to the end of the journal and force them to disk, so
+     * they survive a crash once this returns.
+     * @param records Records to append
+     * @return Number of bytes appended, or 0 if the append failed
+     */
+    public synchronized long append(List<String[]> records) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        try {
+            StringWriter lines = new StringWriter();
+            try (CSVWriter writer = new CSVWriter(lines)) {
+                for (String[] record : records) {
+                    writer.writeNext(record);
+                }
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            int length = bytes.remaining();
+            
+            FileChannel out = openChannel();
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+            
+            recordCount += records.size();
+            return length;
+        } catch (Exception e) {
+            System.err.println("Error appending to journal: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(Paths.get(dataDir));
+            channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+    
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+    
+    /**
+     * Close the journal file. A later append opens it again.
+     */
+    public synchronized void close() {
+        closeChannel();
+    }
+    
+    /**
+     * Replay every journal record in the order it was written.
+     * A segment left behind by an unfinished compaction is replayed first.
+     * @param handler Callback receiving each record
+     * @return Number of records replayed
+     */
+    public synchronized long replay(RecordHandler handler) {
+        long replayed = replayFile(compactingFile, handler);
+        long current = replayFile(journalFile, handler);
+        recordCount = current;
+        return replayed + current;
+    }
+    
+    private long replayFile(Path file, RecordHandler handler) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        
+        long[] count = {0};
+        try {
+            K2530341_CsvStreamParser.parse(file, false, row -> {
+                if (row.size() < 3) {
+                    return; // Skip incomplete record
+                }
+                String[] record = row.toArray();
+                K2530341_DataTable table = K2530341_DataTable.valueOf(record[1]);
+                handler.apply(record[0], table, Arrays.copyOfRange(record, 2, record.length));
+                count[0]++;
+            });
+        } catch (Exception e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+        }
+        return count[0];
+    }
+    
+    /**
+     * Move the current journal aside so a compaction can fold it into the
+     * snapshots while new records keep going to a fresh journal.
+     */
+    public synchronized void beginCompaction() {
+        closeChannel(); // the next append starts the fresh journal
+        try {
+            if (!Files.exists(journalFile)) {
+                return;
+            }
+            if (Files.exists(compactingFile)) {
+                // An earlier compaction did not finish - keep its records too
+                Files.write(compactingFile, Files.readAllBytes(journalFile), StandardOpenOption.APPEND);
+                Files.delete(journalFile);
+            } else {
+                Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+            recordCount = 0;
+        } catch (Exception e) {
+            System.err.println("Error rotating journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Drop the journal segment once the snapshots containing it are on disk.
+     */
+    public synchronized void finishCompaction() {
+        try {
+            Files.deleteIfExists(compactingFile);
+        } catch (Exception e) {
+            System.err.println("Error removing compacted journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Get the number of records in the active journal.
+     * @return Record count
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+}
@@ -1,6 +1,5 @@
 package com.k2530341.slms.persistence;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.k2530341.slms.model.notification.K2530341_Notification;
 import com.k2530341.slms.model.notification.K2530341_NotificationType;
@@ -10,95 +9,161 @@ import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * CSV persistence manager for notifications with atomic write operations.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_NotificationCSVManager {
-    private static final String CSV_FILE = "data/notifications.csv";
+    private static final String FILE_NAME = "notifications.csv";
     private static final String[] HEADER = {
         "notificationId", "userId", "type", "message", "dateISO", "readFlag"
     };
+    private static final K2530341_NotificationType[] TYPES = K2530341_NotificationType.values();
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     
+    private final String dataDir;
+    private final String csvFile;
+    
+    public K2530341_NotificationCSVManager() {
+        this("data");
+    }
+    
+    public K2530341_NotificationCSVManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.csvFile = Paths.get(dataDir, FILE_NAME).toString();
+    }
+    
     /**
      * Load all notifications from CSV file.
      * @return List of notifications
      */
     public List<K2530341_Notification> loadNotifications() {
         List<K2530341_Notification> notifications = new ArrayList<>();
-        File file = new File(CSV_FILE);
+        loadNotifications(notifications::add);
+        return notifications;
+    }
+    
+    /**
+     * Stream all notifications from the CSV file to a callback, without building a list first.
+     * @param consumer Receives each notification
+     */
+    public void loadNotifications(Consumer<K2530341_Notification> consumer) {
+        Path file = Paths.get(csvFile);
         
-        if (!file.exists()) {
-            return notifications;
+        if (!Files.exists(file)) {
+            return;
         }
         
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            String[] line;
-            boolean firstLine = true;
-            
-            while ((line = reader.readNext()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
-                }
-                
-                if (line.length >= 6) {
-                    K2530341_Notification notification = new K2530341_Notification(
-                        line[0], // notificationId
-                        line[1], // userId
-                        K2530341_NotificationType.valueOf(line[2]), // type
-                        line[3], // message
-                        LocalDate.parse(line[4], DATE_FORMATTER), // date
-                        Boolean.parseBoolean(line[5]) // readFlag
-                    );
-                    notifications.add(notification);
+        try {
+            K2530341_CsvStreamParser.parse(file, true, row -> {
+                K2530341_Notification notification = fromRow(row);
+                if (notification != null) {
+                    consumer.accept(notification);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("Error loading notifications: " + e.getMessage());
         }
-        
-        return notifications;
+    }
+    
+    /**
+     * Convert a CSV row into a notification.
+     * @param line CSV fields
+     * @return The notification, or null if the row is incomplete
+     */
+    public K2530341_Notification fromRow(String[] line) {
+        if (line.length < 6) {
+            return null;
+        }
+        return new K2530341_Notification(
+            line[0], // notificationId
+            line[1], // userId
+            K2530341_NotificationType.valueOf(line[2]), // type
+            line[3], // message
+            LocalDate.parse(line[4], DATE_FORMATTER), // date
+            Boolean.parseBoolean(line[5]) // readFlag
+        );
+    }
+    
+    /**
+     * Convert a row from the streaming parser into a notification.
+     * @param row Parsed CSV row
+     * @return The notification, or null if the row is incomplete
+     */
+    public K2530341_Notification fromRow(K2530341_CsvStreamParser.Row row) {
+        if (row.size() < 6) {
+            return null;
+        }
+        return new K2530341_Notification(
+            row.getString(0), // notificationId
+            row.getString(1), // userId
+            row.getEnum(2, TYPES), // type
+            row.getString(3), // message
+            row.getDate(4), // date
+            row.getBoolean(5) // readFlag
+        );
+    }
+    
+    /**
+     * Convert a notification into its CSV row.
+     * @param notification Notification to convert
+     * @return CSV fields
+     */
+    public String[] toRow(K2530341_Notification notification) {
+        return new String[] {
+            notification.getNotificationId(),
+            notification.getUserId(),
+            notification.getType().toString(),
+            notification.getMessage(),
+            notification.getDate().format(DATE_FORMATTER),
+            String.valueOf(notification.isReadFlag())
+        };
     }
     
     /**
      * Save all notifications to CSV file with atomic write operation.
      * @param notifications List of notifications to save
+     * @return Number of bytes written, or 0 if the save failed
      */
-    public void saveNotifications(List<K2530341_Notification> notifications) {
+    public long saveNotifications(List<K2530341_Notification> notifications) {
+        List<String[]> rows = new ArrayList<>(notifications.size());
+        for (K2530341_Notification notification : notifications) {
+            rows.add(toRow(notification));
+        }
+        return saveRows(rows);
+    }
+    
+    /**
+     * Save already converted notification rows with atomic write operation.
+     * @param rows CSV rows to save (without header)
+     * @return Number of bytes written, or 0 if the save failed
+     */
+    public long saveRows(List<String[]> rows) {
         try {
             // Ensure directory exists
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(Paths.get(dataDir));
             
             // Write to temporary file first
-            String tempFile = CSV_FILE + ".tmp";
+            String tempFile = csvFile + ".tmp";
             try (CSVWriter writer = new CSVWriter(new FileWriter(tempFile))) {
                 // Write header
                 writer.writeNext(HEADER);
                 
                 // Write notification data
-                for (K2530341_Notification notification : notifications) {
-                    String[] line = {
-                        notification.getNotificationId(),
-                        notification.getUserId(),
-                        notification.getType().toString(),
-                        notification.getMessage(),
-                        notification.getDate().format(DATE_FORMATTER),
-                        String.valueOf(notification.isReadFlag())
-                    };
+                for (String[] line : rows) {
                     writer.writeNext(line);
                 }
             }
             
-            // Atomic rename
-            Files.move(Paths.get(tempFile), Paths.get(CSV_FILE), 
-                      StandardCopyOption.REPLACE_EXISTING, 
-                      StandardCopyOption.ATOMIC_MOVE);
-                      
+            // Force to disk, then atomic rename
+            K2530341_DurableFiles.replace(Paths.get(tempFile), Paths.get(csvFile));
+            
+            return Files.size(Paths.get(csvFile));
         } catch (Exception e) {
             System.err.println("Error saving notifications: " + e.getMessage());
+            return 0;
         }
     }
 }
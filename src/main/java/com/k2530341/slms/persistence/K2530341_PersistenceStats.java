@@ -0,0 +1,116 @@
+package com.k2530341.slms.persistence;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counters describing how much data the service has written to disk.
+ * Keeps the figures of the most recent flush as well as running totals
+ * (including journal compactions), so the cost of each save can be monitored.
+ * Also keeps how long each table took to load at startup.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_PersistenceStats {
+    private long flushCount;
+    private long compactionCount;
+    private long totalRowsWritten;
+    private long totalBytesWritten;
+    
+    private EnumSet<K2530341_DataTable> lastFlushTables = EnumSet.noneOf(K2530341_DataTable.class);
+    private long lastFlushRows;
+    private long lastFlushBytes;
+    
+    private final Map<K2530341_DataTable, Long> loadMillis = new EnumMap<>(K2530341_DataTable.class);
+    private final Map<K2530341_DataTable, Integer> loadRows = new EnumMap<>(K2530341_DataTable.class);
+    
+    /**
+     * Record one completed flush.
+     * @param tables Tables written by the flush
+     * @param rows Number of rows written
+     * @param bytes Number of bytes written
+     */
+    public synchronized void recordFlush(Set<K2530341_DataTable> tables, long rows, long bytes) {
+        flushCount++;
+        totalRowsWritten += rows;
+        totalBytesWritten += bytes;
+        lastFlushTables = EnumSet.noneOf(K2530341_DataTable.class);
+        lastFlushTables.addAll(tables);
+        lastFlushRows = rows;
+        lastFlushBytes = bytes;
+    }
+    
+    /**
+     * Record one completed compaction of the journal into the snapshots.
+     * Counts towards the totals but not towards the last flush figures.
+     * @param tables Tables rewritten by the compaction
+     * @param rows Number of rows written
+     * @param bytes Number of bytes written
+     */
+    public synchronized void recordCompaction(Set<K2530341_DataTable> tables, long rows, long bytes) {
+        compactionCount++;
+        totalRowsWritten += rows;
+        totalBytesWritten += bytes;
+    }
+    
+    /**
+     * Record how long one table took to load.
+     * @param table Table that was loaded
+     * @param rows Number of rows loaded
+     * @param millis Load time in milliseconds
+     */
+    public synchronized void recordLoad(K2530341_DataTable table, int rows, long millis) {
+        loadRows.put(table, rows);
+        loadMillis.put(table, millis);
+    }
+    
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+    
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+    
+    public synchronized long getTotalRowsWritten() {
+        return totalRowsWritten;
+    }
+    
+    public synchronized long getTotalBytesWritten() {
+        return totalBytesWritten;
+    }
+    
+    public synchronized Set<K2530341_DataTable> getLastFlushTables() {
+        return EnumSet.copyOf(lastFlushTables);
+    }
+    
+    public synchronized long getLastFlushRows() {
+        return lastFlushRows;
+    }
+    
+    public synchronized long getLastFlushBytes() {
+        return lastFlushBytes;
+    }
+    
+    public synchronized Map<K2530341_DataTable, Long> getLoadMillis() {
+        return new EnumMap<>(loadMillis);
+    }
+    
+    public synchronized Map<K2530341_DataTable, Integer> getLoadRows() {
+        return new EnumMap<>(loadRows);
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "PersistenceStats{" +
+                "flushes=" + flushCount +
+                ", compactions=" + compactionCount +
+                ", totalRows=" + totalRowsWritten +
+                ", totalBytes=" + totalBytesWritten +
+                ", lastTables=" + lastFlushTables +
+                ", lastRows=" + lastFlushRows +
+                ", lastBytes=" + lastFlushBytes +
+                '}';
+    }
+}
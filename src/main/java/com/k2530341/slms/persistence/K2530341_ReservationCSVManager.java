@@ -1,6 +1,5 @@
 package com.k2530341.slms.persistence;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.k2530341.slms.model.reservation.K2530341_Reservation;
 import com.k2530341.slms.model.reservation.K2530341_ReservationStatus;
@@ -10,97 +9,163 @@ import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * CSV persistence manager for reservations with atomic write operations.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_ReservationCSVManager {
-    private static final String CSV_FILE = "data/reservations.csv";
+    private static final String FILE_NAME = "reservations.csv";
     private static final String[] HEADER = {
         "reservationId", "bookId", "userId", "reservationDateISO", "notifiedAtISO", "status"
     };
+    private static final K2530341_ReservationStatus[] STATUSES = K2530341_ReservationStatus.values();
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
     
+    private final String dataDir;
+    private final String csvFile;
+    
+    public K2530341_ReservationCSVManager() {
+        this("data");
+    }
+    
+    public K2530341_ReservationCSVManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.csvFile = Paths.get(dataDir, FILE_NAME).toString();
+    }
+    
     /**
      * Load all reservations from CSV file.
      * @return List of reservations
      */
     public List<K2530341_Reservation> loadReservations() {
         List<K2530341_Reservation> reservations = new ArrayList<>();
-        File file = new File(CSV_FILE);
+        loadReservations(reservations::add);
+        return reservations;
+    }
+    
+    /**
+     * Stream all reservations from the CSV file to a callback, without building a list first.
+     * @param consumer Receives each reservation
+     */
+    public void loadReservations(Consumer<K2530341_Reservation> consumer) {
+        Path file = Paths.get(csvFile);
         
-        if (!file.exists()) {
-            return reservations;
+        if (!Files.exists(file)) {
+            return;
         }
         
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            String[] line;
-            boolean firstLine = true;
-            
-            while ((line = reader.readNext()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
-                }
-                
-                if (line.length >= 6) {
-                    LocalDateTime notifiedAt = line[4].isEmpty() ? null : LocalDateTime.parse(line[4], DATETIME_FORMATTER);
-                    
-                    K2530341_Reservation reservation = new K2530341_Reservation(
-                        line[0], // reservationId
-                        line[1], // bookId
-                        line[2], // userId
-                        LocalDateTime.parse(line[3], DATETIME_FORMATTER), // reservationDate
-                        notifiedAt, // notifiedAt
-                        K2530341_ReservationStatus.valueOf(line[5]) // status
-                    );
-                    reservations.add(reservation);
+        try {
+            K2530341_CsvStreamParser.parse(file, true, row -> {
+                K2530341_Reservation reservation = fromRow(row);
+                if (reservation != null) {
+                    consumer.accept(reservation);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("Error loading reservations: " + e.getMessage());
         }
+    }
+    
+    /**
+     * Convert a CSV row into a reservation.
+     * @param line CSV fields
+     * @return The reservation, or null if the row is incomplete
+     */
+    public K2530341_Reservation fromRow(String[] line) {
+        if (line.length < 6) {
+            return null;
+        }
+        LocalDateTime notifiedAt = line[4].isEmpty() ? null : LocalDateTime.parse(line[4], DATETIME_FORMATTER);
         
-        return reservations;
+        return new K2530341_Reservation(
+            line[0], // reservationId
+            line[1], // bookId
+            line[2], // userId
+            LocalDateTime.parse(line[3], DATETIME_FORMATTER), // reservationDate
+            notifiedAt, // notifiedAt
+            K2530341_ReservationStatus.valueOf(line[5]) // status
+        );
+    }
+    
+    /**
+     * Convert a row from the streaming parser into a reservation.
+     * @param row Parsed CSV row
+     * @return The reservation, or null if the row is incomplete
+     */
+    public K2530341_Reservation fromRow(K2530341_CsvStreamParser.Row row) {
+        if (row.size() < 6) {
+            return null;
+        }
+        return new K2530341_Reservation(
+            row.getString(0), // reservationId
+            row.getString(1), // bookId
+            row.getString(2), // userId
+            row.getDateTime(3), // reservationDate
+            row.getDateTime(4), // notifiedAt (null when empty)
+            row.getEnum(5, STATUSES) // status
+        );
+    }
+    
+    /**
+     * Convert a reservation into its CSV row.
+     * @param reservation Reservation to convert
+     * @return CSV fields
+     */
+    public String[] toRow(K2530341_Reservation reservation) {
+        return new String[] {
+            reservation.getReservationId(),
+            reservation.getBookId(),
+            reservation.getUserId(),
+            reservation.getReservationDate().format(DATETIME_FORMATTER),
+            reservation.getNotifiedAt() != null ? reservation.getNotifiedAt().format(DATETIME_FORMATTER) : "",
+            reservation.getStatus().toString()
+        };
     }
     
     /**
      * Save all reservations to CSV file with atomic write operation.
      * @param reservations List of reservations to save
+     * @return Number of bytes written, or 0 if the save failed
      */
-    public void saveReservations(List<K2530341_Reservation> reservations) {
+    public long saveReservations(List<K2530341_Reservation> reservations) {
+        List<String[]> rows = new ArrayList<>(reservations.size());
+        for (K2530341_Reservation reservation : reservations) {
+            rows.add(toRow(reservation));
+        }
+        return saveRows(rows);
+    }
+    
+    /**
+     * Save already converted reservation rows with atomic write operation.
+     * @param rows CSV rows to save (without header)
+     * @return Number of bytes written, or 0 if the save failed
+     */
+    public long saveRows(List<String[]> rows) {
         try {
             // Ensure directory exists
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(Paths.get(dataDir));
             
             // Write to temporary file first
-            String tempFile = CSV_FILE + ".tmp";
+            String tempFile = csvFile + ".tmp";
             try (CSVWriter writer = new CSVWriter(new FileWriter(tempFile))) {
                 // Write header
                 writer.writeNext(HEADER);
                 
                 // Write reservation data
-                for (K2530341_Reservation reservation : reservations) {
-                    String[] line = {
-                        reservation.getReservationId(),
-                        reservation.getBookId(),
-                        reservation.getUserId(),
-                        reservation.getReservationDate().format(DATETIME_FORMATTER),
-                        reservation.getNotifiedAt() != null ? reservation.getNotifiedAt().format(DATETIME_FORMATTER) : "",
-                        reservation.getStatus().toString()
-                    };
+                for (String[] line : rows) {
                     writer.writeNext(line);
                 }
             }
             
-            // Atomic rename
-            Files.move(Paths.get(tempFile), Paths.get(CSV_FILE), 
-                      StandardCopyOption.REPLACE_EXISTING, 
-                      StandardCopyOption.ATOMIC_MOVE);
-                      
+            // Force to disk, then atomic rename
+            K2530341_DurableFiles.replace(Paths.get(tempFile), Paths.get(csvFile));
+            
+            return Files.size(Paths.get(csvFile));
         } catch (Exception e) {
             System.err.println("Error saving reservations: " + e.getMessage());
+            return 0;
         }
     }
 }
@@ -0,0 +1,28 @@
+package com.k2530341.slms.persistence;
+
+/**
+ * Enum of the file formats the service can use for its full snapshots.
+ * Selected with the system property "slms.persistence" (csv or binary).
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public enum K2530341_SnapshotFormat {
+    CSV,
+    BINARY;
+    
+    public static final String PROPERTY = "slms.persistence";
+    
+    /**
+     * Get the format chosen by the "slms.persistence" system property.
+     * Falls back to BINARY when the property is missing or not recognised.
+     * @return Configured snapshot format
+     */
+    public static K2530341_SnapshotFormat configured() {
+        String value = System.getProperty(PROPERTY, BINARY.name());
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown " + PROPERTY + " value '" + value + "', using BINARY");
+            return BINARY;
+        }
+    }
+}
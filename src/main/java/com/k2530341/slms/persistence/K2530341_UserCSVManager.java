@@ -1,22 +1,35 @@
 package com.k2530341.slms.persistence;
 
-import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.k2530341.slms.model.user.*;
 
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * CSV persistence manager for users with atomic write operations.
  * Author: M.Y.M. SAJIDH (K2530341)
  */
 public class K2530341_UserCSVManager {
-    private static final String CSV_FILE = "data/users.csv";
+    private static final String FILE_NAME = "users.csv";
     private static final String[] HEADER = {
         "userId", "name", "email", "contactNumber", "membershipType", "currentBorrowCount"
     };
+    private static final K2530341_MembershipType[] MEMBERSHIP_TYPES = K2530341_MembershipType.values();
+    
+    private final String dataDir;
+    private final String csvFile;
+    
+    public K2530341_UserCSVManager() {
+        this("data");
+    }
+    
+    public K2530341_UserCSVManager(String dataDir) {
+        this.dataDir = dataDir;
+        this.csvFile = Paths.get(dataDir, FILE_NAME).toString();
+    }
     
     /**
      * Load all users from CSV file.
@@ -24,105 +37,159 @@ public class K2530341_UserCSVManager {
      */
     public List<K2530341_User> loadUsers() {
         List<K2530341_User> users = new ArrayList<>();
-        File file = new File(CSV_FILE);
+        loadUsers(users::add);
+        return users;
+    }
+    
+    /**
+     * Stream all users from the CSV file to a callback, without building a list first.
+     * @param consumer Receives each user
+     */
+    public void loadUsers(Consumer<K2530341_User> consumer) {
+        Path file = Paths.get(csvFile);
         
-        if (!file.exists()) {
-            return users;
+        if (!Files.exists(file)) {
+            return;
         }
         
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            String[] line;
-            boolean firstLine = true;
-            
-            while ((line = reader.readNext()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Skip header
-                }
-                
-                if (line.length >= 6) {
-                    K2530341_MembershipType type = K2530341_MembershipType.valueOf(line[4]);
-                    K2530341_User user;
-                    
-                    // Create appropriate subclass based on membership type
-                    switch (type) {
-                        case STUDENT:
-                            user = new K2530341_Student(
-                                line[0], // userId
-                                line[1], // name
-                                line[2], // email
-                                line[3], // contactNumber
-                                Integer.parseInt(line[5]) // currentBorrowCount
-                            );
-                            break;
-                        case FACULTY:
-                            user = new K2530341_Faculty(
-                                line[0], // userId
-                                line[1], // name
-                                line[2], // email
-                                line[3], // contactNumber
-                                Integer.parseInt(line[5]) // currentBorrowCount
-                            );
-                            break;
-                        case GUEST:
-                            user = new K2530341_Guest(
-                                line[0], // userId
-                                line[1], // name
-                                line[2], // email
-                                line[3], // contactNumber
-                                Integer.parseInt(line[5]) // currentBorrowCount
-                            );
-                            break;
-                        default:
-                            continue; // Skip unknown types
-                    }
-                    
-                    users.add(user);
+        try {
+            K2530341_CsvStreamParser.parse(file, true, row -> {
+                K2530341_User user = fromRow(row);
+                if (user != null) {
+                    consumer.accept(user);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("Error loading users: " + e.getMessage());
         }
+    }
+    
+    /**
+     * Convert a CSV row into a user of the matching subclass.
+     * @param line CSV fields
+     * @return The user, or null if the row is incomplete or of unknown type
+     */
+    public K2530341_User fromRow(String[] line) {
+        if (line.length < 6) {
+            return null;
+        }
+        K2530341_MembershipType type = K2530341_MembershipType.valueOf(line[4]);
         
-        return users;
+        // Create appropriate subclass based on membership type
+        switch (type) {
+            case STUDENT:
+                return new K2530341_Student(
+                    line[0], // userId
+                    line[1], // name
+                    line[2], // email
+                    line[3], // contactNumber
+                    Integer.parseInt(line[5]) // currentBorrowCount
+                );
+            case FACULTY:
+                return new K2530341_Faculty(
+                    line[0], // userId
+                    line[1], // name
+                    line[2], // email
+                    line[3], // contactNumber
+                    Integer.parseInt(line[5]) // currentBorrowCount
+                );
+            case GUEST:
+                return new K2530341_Guest(
+                    line[0], // userId
+                    line[1], // name
+                    line[2], // email
+                    line[3], // contactNumber
+                    Integer.parseInt(line[5]) // currentBorrowCount
+                );
+            default:
+                return null; // Skip unknown types
+        }
+    }
+    
+    /**
+     * Convert a row from the streaming parser into a user.
+     * @param row Parsed CSV row
+     * @return The user, or null if the row is incomplete
+     */
+    public K2530341_User fromRow(K2530341_CsvStreamParser.Row row) {
+        if (row.size() < 6) {
+            return null;
+        }
+        K2530341_MembershipType type = row.getEnum(4, MEMBERSHIP_TYPES);
+        
+        switch (type) {
+            case STUDENT:
+                return new K2530341_Student(row.getString(0), row.getString(1),
+                    row.getString(2), row.getString(3), row.getInt(5));
+            case FACULTY:
+                return new K2530341_Faculty(row.getString(0), row.getString(1),
+                    row.getString(2), row.getString(3), row.getInt(5));
+            case GUEST:
+                return new K2530341_Guest(row.getString(0), row.getString(1),
+                    row.getString(2), row.getString(3), row.getInt(5));
+            default:
+                return null; // Skip unknown types
+        }
+    }
+    
+    /**
+     * Convert a user into its CSV row.
+     * @param user User to convert
+     * @return CSV fields
+     */
+    public String[] toRow(K2530341_User user) {
+        return new String[] {
+            user.getUserId(),
+            user.getName(),
+            user.getEmail(),
+            user.getContactNumber(),
+            user.getMembershipType().toString(),
+            String.valueOf(user.getCurrentBorrowCount())
+        };
     }
     
     /**
      * Save all users to CSV file with atomic write operation.
      * @param users List of users to save
+     * @return Number of bytes written, or 0 if the save failed
      */
-    public void saveUsers(List<K2530341_User> users) {
+    public long saveUsers(List<K2530341_User> users) {
+        List<String[]> rows = new ArrayList<>(users.size());
+        for (K2530341_User user : users) {
+            rows.add(toRow(user));
+        }
+        return saveRows(rows);
+    }
+    
+    /**
+     * Save already converted user rows with atomic write operation.
+     * @param rows CSV rows to save (without header)
+     * @return Number of bytes written, or 0 if the save failed
+     */
+    public long saveRows(List<String[]> rows) {
         try {
             // Ensure directory exists
-            Files.createDirectories(Paths.get("data"));
+            Files.createDirectories(Paths.get(dataDir));
             
             // Write to temporary file first
-            String tempFile = CSV_FILE + ".tmp";
+            String tempFile = csvFile + ".tmp";
             try (CSVWriter writer = new CSVWriter(new FileWriter(tempFile))) {
                 // Write header
                 writer.writeNext(HEADER);
                 
                 // Write user data
-                for (K2530341_User user : users) {
-                    String[] line = {
-                        user.getUserId(),
-                        user.getName(),
-                        user.getEmail(),
-                        user.getContactNumber(),
-                        user.getMembershipType().toString(),
-                        String.valueOf(user.getCurrentBorrowCount())
-                    };
+                for (String[] line : rows) {
                     writer.writeNext(line);
                 }
             }
             
-            // Atomic rename
-            Files.move(Paths.get(tempFile), Paths.get(CSV_FILE), 
-                      StandardCopyOption.REPLACE_EXISTING, 
-                      StandardCopyOption.ATOMIC_MOVE);
-                      
+            // Force to disk, then atomic rename
+            K2530341_DurableFiles.replace(Paths.get(tempFile), Paths.get(csvFile));
+            
+            return Files.size(Paths.get(csvFile));
         } catch (Exception e) {
             System.err.println("Error saving users: " + e.getMessage());
+            return 0;
         }
     }
 }
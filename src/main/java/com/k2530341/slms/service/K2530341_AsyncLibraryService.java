@@ -0,0 +1,181 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
+import com.k2530341.slms.model.book.K2530341_Book;
+import com.k2530341.slms.model.user.K2530341_User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous face of the library and report services for the UI.
+ * Mutations go through the single-writer command pipeline; searches and
+ * reports run on one dedicated reader thread, so the FX thread never waits
+ * on the service. Each future is completed through the callback executor -
+ * the app passes Platform::runLater, so stages chained onto it can touch the
+ * scene graph directly (and a refresh chained after a borrow sees the borrow).
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_AsyncLibraryService {
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+    
+    private final K2530341_LibraryService libraryService;
+    private final K2530341_ReportService reportService;
+    private final Executor callbackExecutor;
+    private final K2530341_CommandPipeline pipeline;
+    private final ExecutorService reader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "slms-service-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * @param libraryService Service the calls are made on
+     * @param reportService Report service the report calls are made on
+     * @param callbackExecutor Where futures are completed, e.g. Platform::runLater
+     */
+    public K2530341_AsyncLibraryService(K2530341_LibraryService libraryService, K2530341_ReportService reportService,
+                                       Executor callbackExecutor) {
+        this.libraryService = libraryService;
+        this.reportService = reportService;
+        this.callbackExecutor = callbackExecutor;
+        this.pipeline = libraryService.getCommandPipeline();
+    }
+    
+    /**
+     * Run a mutation (e.g. a command or book/user CRUD) through the command pipeline.
+     * @param mutation Operation to apply
+     * @return Future completed on the callback executor with the result
+     */
+    public <T> CompletableFuture<T> execute(Supplier<T> mutation) {
+        return onCallbackExecutor(source -> pipeline.submit(mutation, source));
+    }
+    
+    /**
+     * Run read-only service work on the reader thread.
+     * @param query Work to run
+     * @return Future completed on the callback executor with the result
+     */
+    public <T> CompletableFuture<T> query(Supplier<T> query) {
+        return onCallbackExecutor(source -> reader.execute(() -> {
+            try {
+                source.complete(query.get());
+            } catch (RuntimeException e) {
+                source.completeExceptionally(e);
+            }
+        }));
+    }
+    
+    // hook the hand-off onto the source before starting the work, so it always
+    // happens on the thread that completes the work, never on the caller
+    private <T> CompletableFuture<T> onCallbackExecutor(Consumer<CompletableFuture<T>> start) {
+        CompletableFuture<T> source = new CompletableFuture<>();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        source.whenComplete((value, error) ->
+            callbackExecutor.execute(() -> {
+                if (error != null) {
+                    System.err.println("Error in service call: " + error.getMessage());
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            }));
+        start.accept(source);
+        return result;
+    }
+    
+    // ========== BORROW/RETURN/RESERVE ==========
+    
+    public CompletableFuture<String> borrowBook(String bookId, String userId) {
+        return execute(() -> libraryService.borrowBook(bookId, userId));
+    }
+    
+    public CompletableFuture<Boolean> returnBook(String borrowId) {
+        return execute(() -> libraryService.returnBook(borrowId));
+    }
+    
+    public CompletableFuture<Map<String, String>> borrowBooks(String userId, List<String> bookIds) {
+        return execute(() -> libraryService.borrowBooks(userId, bookIds));
+    }
+    
+    public CompletableFuture<Map<String, Boolean>> returnBooks(List<String> borrowIds) {
+        return execute(() -> libraryService.returnBooks(borrowIds));
+    }
+    
+    public CompletableFuture<String> reserveBook(String bookId, String userId) {
+        return execute(() -> libraryService.reserveBook(bookId, userId));
+    }
+    
+    public CompletableFuture<Boolean> cancelReservation(String reservationId) {
+        return execute(() -> libraryService.cancelReservation(reservationId));
+    }
+    
+    // ========== SEARCH ==========
+    
+    public CompletableFuture<List<K2530341_Book>> searchBooks(String query) {
+        return query(() -> libraryService.searchBooks(query));
+    }
+    
+    public CompletableFuture<K2530341_FacetResult> searchBooksFaceted(String query, String category,
+                                                                     K2530341_AvailabilityStatus status, String tag) {
+        return query(() -> libraryService.searchBooksFaceted(query, category, status, tag));
+    }
+    
+    public CompletableFuture<List<String>> autocomplete(String prefix, int limit) {
+        return query(() -> libraryService.autocomplete(prefix, limit));
+    }
+    
+    // ========== REPORTS ==========
+    
+    public CompletableFuture<List<K2530341_Book>> getMostBorrowedBooks(int topN) {
+        return query(() -> reportService.getMostBorrowedBooks(topN));
+    }
+    
+    public CompletableFuture<List<K2530341_User>> getActiveBorrowers(int topN) {
+        return query(() -> reportService.getActiveBorrowers(topN));
+    }
+    
+    public CompletableFuture<Void> exportMostBorrowedBooks(String filename, int topN) {
+        return query(() -> {
+            reportService.exportMostBorrowedBooks(filename, topN);
+            return null;
+        });
+    }
+    
+    public CompletableFuture<Void> exportActiveBorrowers(String filename, int topN) {
+        return query(() -> {
+            reportService.exportActiveBorrowers(filename, topN);
+            return null;
+        });
+    }
+    
+    /**
+     * Write every table out to the CSV files on the reader thread.
+     * @return Future completed with true if every file was saved
+     */
+    public CompletableFuture<Boolean> exportCsv() {
+        return query(libraryService::exportCsv);
+    }
+    
+    /**
+     * Apply the mutations already submitted and stop the reader thread, so
+     * everything is in before the final save. The pipeline belongs to the
+     * library service and stops with it.
+     */
+    public void shutdown() {
+        pipeline.drain();
+        reader.shutdown();
+        try {
+            reader.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
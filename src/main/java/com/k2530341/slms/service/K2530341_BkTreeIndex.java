@@ -0,0 +1,185 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_Book;
+
+import java.util.*;
+
+/**
+ * BK-tree over the title and author tokens of the catalog, for typo-tolerant
+ * lookups. Each node holds one distinct token and the books containing it;
+ * children are keyed by their Levenshtein distance to the node, so a query
+ * with tolerance d only descends into children whose key is within d of its
+ * own distance to the node (triangle inequality) instead of comparing
+ * against every token.
+ * Nodes are never unlinked: removing a book only empties its token sets, and
+ * a rebuild after loading drops the empty ones.
+ * Kept in step by the library service on add/update/delete.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_BkTreeIndex {
+    private static class Node {
+        final String token;
+        final Set<String> bookIds = new HashSet<>();
+        final Map<Integer, Node> children = new HashMap<>();
+        
+        Node(String token) {
+            this.token = token;
+        }
+    }
+    
+    private Node root;
+    private final Map<String, Node> nodes = new HashMap<>();
+    // tokens indexed for each book, so the book can be removed again
+    private final Map<String, Set<String>> bookTokens = new HashMap<>();
+    
+    /**
+     * Add or re-index a book.
+     * @param book Book to index
+     */
+    synchronized void index(K2530341_Book book) {
+        remove(book.getBookId());
+        
+        Set<String> tokens = new HashSet<>(K2530341_BookSearchIndex.tokenize(book.getTitle()));
+        tokens.addAll(K2530341_BookSearchIndex.tokenize(book.getAuthor()));
+        for (String token : tokens) {
+            insert(token).bookIds.add(book.getBookId());
+        }
+        bookTokens.put(book.getBookId(), tokens);
+    }
+    
+    /**
+     * Remove a book from the index.
+     * @param bookId ID of the book to remove
+     */
+    synchronized void remove(String bookId) {
+        Set<String> tokens = bookTokens.remove(bookId);
+        if (tokens != null) {
+            for (String token : tokens) {
+                nodes.get(token).bookIds.remove(bookId);
+            }
+        }
+    }
+    
+    /**
+     * Rebuild the tree from scratch (after loading data).
+     * @param books Every book
+     */
+    synchronized void rebuild(Collection<K2530341_Book> books) {
+        root = null;
+        nodes.clear();
+        bookTokens.clear();
+        books.forEach(this::index);
+    }
+    
+    /**
+     * Find the books matching every query token within the given edit distance.
+     * @param query Free-text query (may be misspelled)
+     * @param maxDistance Maximum Levenshtein distance per token
+     * @return IDs of the matching books, closest match first
+     */
+    synchronized List<String> search(String query, int maxDistance) {
+        List<String> queryTokens = K2530341_BookSearchIndex.tokenize(query);
+        if (queryTokens.isEmpty() || root == null || maxDistance < 0) {
+            return new ArrayList<>();
+        }
+        
+        Map<String, Integer> distances = null;
+        for (String queryToken : new LinkedHashSet<>(queryTokens)) {
+            Map<String, Integer> tokenDistances = new HashMap<>();
+            collect(queryToken, maxDistance, tokenDistances);
+            if (distances == null) {
+                distances = tokenDistances;
+            } else {
+                // AND - keep books matching every token, summing their distances
+                Map<String, Integer> both = new HashMap<>();
+                for (Map.Entry<String, Integer> entry : distances.entrySet()) {
+                    Integer other = tokenDistances.get(entry.getKey());
+                    if (other != null) {
+                        both.put(entry.getKey(), entry.getValue() + other);
+                    }
+                }
+                distances = both;
+            }
+            if (distances.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+        
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(distances.entrySet());
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        List<String> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, Integer> entry : ranked) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+    
+    // closest distance per book over all tokens within maxDistance of the query token
+    private void collect(String queryToken, int maxDistance, Map<String, Integer> distances) {
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(queryToken, node.token);
+            if (distance <= maxDistance) {
+                for (String bookId : node.bookIds) {
+                    distances.merge(bookId, distance, Math::min);
+                }
+            }
+            for (int d = Math.max(1, distance - maxDistance); d <= distance + maxDistance; d++) {
+                Node child = node.children.get(d);
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+    }
+    
+    private Node insert(String token) {
+        Node existing = nodes.get(token);
+        if (existing != null) {
+            return existing;
+        }
+        Node created = new Node(token);
+        nodes.put(token, created);
+        if (root == null) {
+            root = created;
+            return created;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(token, node.token);
+            Node child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, created);
+                return created;
+            }
+            node = child;
+        }
+    }
+    
+    /**
+     * Levenshtein edit distance between two strings.
+     * @param a First string
+     * @param b Second string
+     * @return Number of single-character inserts, deletes and substitutions
+     */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
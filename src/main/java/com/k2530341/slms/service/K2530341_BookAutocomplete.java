@@ -0,0 +1,241 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_Book;
+
+import java.util.*;
+
+/**
+ * Prefix index for search-box autocomplete.
+ * Every distinct title, author and category is a completion; each word start
+ * of a completion is stored as a lowercase key in one sorted array, so a
+ * prefix lookup is a binary search giving a run of keys.
+ * Completions are ranked by the total borrowHistoryCount of their books. The
+ * popularity is a separate array by completion ordinal with a range-max tree
+ * over the keys, so a checkout bumps a few counters instead of rebuilding the
+ * index, and a lookup pulls the best completions out of the run one by one
+ * and stops after `limit` of them.
+ * The keys never change after being built; the library service builds a new
+ * instance in the background when titles, authors or categories change.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public final class K2530341_BookAutocomplete {
+    private final String[] keys;          // sorted lowercase word-start suffixes
+    private final int[] completionOfKey;  // key index -> completion index
+    private final int[][] keysOfCompletion;
+    private final String[] completions;
+    // book ID -> completions it contributes popularity to
+    private final Map<String, int[]> completionsOfBook;
+    // guarded by this - borrow totals by completion ordinal, and the tree over them
+    private final int[] popularity;
+    // tree[keys.length + i] is key i; each inner node holds the better key of its two children
+    private final int[] tree;
+    
+    private K2530341_BookAutocomplete(String[] keys, int[] completionOfKey, String[] completions,
+                                      Map<String, int[]> completionsOfBook) {
+        this.keys = keys;
+        this.completionOfKey = completionOfKey;
+        this.completions = completions;
+        this.completionsOfBook = completionsOfBook;
+        this.popularity = new int[completions.length];
+        this.tree = new int[2 * keys.length];
+        
+        int[] keyCounts = new int[completions.length];
+        for (int owner : completionOfKey) {
+            keyCounts[owner]++;
+        }
+        this.keysOfCompletion = new int[completions.length][];
+        for (int id = 0; id < completions.length; id++) {
+            keysOfCompletion[id] = new int[keyCounts[id]];
+            keyCounts[id] = 0;
+        }
+        for (int i = 0; i < completionOfKey.length; i++) {
+            int owner = completionOfKey[i];
+            keysOfCompletion[owner][keyCounts[owner]++] = i;
+        }
+    }
+    
+    /**
+     * Build the index from the current catalog.
+     * @param books Every book
+     * @return Autocomplete index over titles, authors and categories
+     */
+    static K2530341_BookAutocomplete build(Collection<K2530341_Book> books) {
+        // one completion per distinct value (case-insensitive)
+        Map<String, Integer> completionIds = new HashMap<>();
+        List<String> completionList = new ArrayList<>();
+        Map<String, int[]> completionsOfBook = new HashMap<>();
+        for (K2530341_Book book : books) {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (String value : new String[] {book.getTitle(), book.getAuthor(), book.getCategory()}) {
+                if (value == null || value.isBlank()) {
+                    continue;
+                }
+                String text = value.trim();
+                Integer id = completionIds.get(text.toLowerCase());
+                if (id == null) {
+                    id = completionList.size();
+                    completionIds.put(text.toLowerCase(), id);
+                    completionList.add(text);
+                }
+                ids.add(id);
+            }
+            completionsOfBook.put(book.getBookId(), ids.stream().mapToInt(Integer::intValue).toArray());
+        }
+        
+        List<String> keyList = new ArrayList<>();
+        List<Integer> ownerList = new ArrayList<>();
+        for (int id = 0; id < completionList.size(); id++) {
+            String lower = completionList.get(id).toLowerCase();
+            for (int i = 0; i < lower.length(); i++) {
+                boolean wordStart = i == 0 || !Character.isLetterOrDigit(lower.charAt(i - 1));
+                if (wordStart && Character.isLetterOrDigit(lower.charAt(i))) {
+                    keyList.add(lower.substring(i));
+                    ownerList.add(id);
+                }
+            }
+        }
+        
+        Integer[] order = new Integer[keyList.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(keyList::get));
+        String[] keys = new String[order.length];
+        int[] completionOfKey = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keyList.get(order[i]);
+            completionOfKey[i] = ownerList.get(order[i]);
+        }
+        
+        K2530341_BookAutocomplete index = new K2530341_BookAutocomplete(keys, completionOfKey,
+            completionList.toArray(new String[0]), completionsOfBook);
+        index.refreshPopularity(books);
+        return index;
+    }
+    
+    /**
+     * Recount the popularity of every completion from the books' borrow counts.
+     * @param books Every book (as given to build, possibly borrowed since)
+     */
+    synchronized void refreshPopularity(Collection<K2530341_Book> books) {
+        Arrays.fill(popularity, 0);
+        for (K2530341_Book book : books) {
+            int[] ids = completionsOfBook.get(book.getBookId());
+            if (ids != null) {
+                for (int id : ids) {
+                    popularity[id] += book.getBorrowHistoryCount();
+                }
+            }
+        }
+        int size = keys.length;
+        for (int i = 0; i < size; i++) {
+            tree[size + i] = i;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+    
+    /**
+     * Count one more borrow of a book towards its title, author and category.
+     * A book added after this index was built is picked up by the next build.
+     * @param bookId ID of the borrowed book
+     */
+    synchronized void recordBorrow(String bookId) {
+        int[] ids = completionsOfBook.get(bookId);
+        if (ids == null) {
+            return;
+        }
+        for (int id : ids) {
+            popularity[id]++;
+            for (int key : keysOfCompletion[id]) {
+                for (int node = (keys.length + key) >>> 1; node > 0; node >>>= 1) {
+                    tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the most popular completions having a word that starts with the prefix.
+     * @param prefix Text typed so far (case-insensitive)
+     * @param limit Maximum number of completions
+     * @return Completions, most borrowed first
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        String lowerPrefix = prefix == null ? "" : prefix.trim().toLowerCase();
+        if (lowerPrefix.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        int from = lowerBound(lowerPrefix);
+        int to = lowerBound(lowerPrefix + Character.MAX_VALUE);
+        
+        // best key of each pending sub-range of the run, best first; taking a key
+        // splits its range in two, so only about `limit` ranges are ever looked at
+        Comparator<int[]> rank = (a, b) -> better(a[2], b[2]) == a[2] ? -1 : 1;
+        PriorityQueue<int[]> ranges = new PriorityQueue<>(rank);
+        offer(ranges, from, to);
+        List<String> results = new ArrayList<>(Math.min(limit, to - from));
+        Set<Integer> seen = new HashSet<>();
+        while (results.size() < limit && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            int key = range[2];
+            // a completion with several matching words is listed once
+            if (seen.add(completionOfKey[key])) {
+                results.add(completions[completionOfKey[key]]);
+            }
+            offer(ranges, range[0], key);
+            offer(ranges, key + 1, range[1]);
+        }
+        return results;
+    }
+    
+    private void offer(PriorityQueue<int[]> ranges, int from, int to) {
+        if (from < to) {
+            ranges.add(new int[] {from, to, best(from, to)});
+        }
+    }
+    
+    // best key in [from, to), read off the tree
+    private int best(int from, int to) {
+        int result = from;
+        for (int low = from + keys.length, high = to + keys.length; low < high; low >>>= 1, high >>>= 1) {
+            if ((low & 1) == 1) {
+                result = better(result, tree[low++]);
+            }
+            if ((high & 1) == 1) {
+                result = better(result, tree[--high]);
+            }
+        }
+        return result;
+    }
+    
+    // more borrowed completion first, then alphabetical, then key order
+    private int better(int keyA, int keyB) {
+        int a = completionOfKey[keyA];
+        int b = completionOfKey[keyB];
+        if (popularity[a] != popularity[b]) {
+            return popularity[a] > popularity[b] ? keyA : keyB;
+        }
+        int byText = completions[a].compareTo(completions[b]);
+        if (byText != 0) {
+            return byText < 0 ? keyA : keyB;
+        }
+        return keyA <= keyB ? keyA : keyB;
+    }
+    
+    // first key >= prefix
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
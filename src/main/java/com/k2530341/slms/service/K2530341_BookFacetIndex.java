@@ -0,0 +1,279 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
+import com.k2530341.slms.model.book.K2530341_Book;
+
+import java.util.*;
+
+/**
+ * Facet bitmaps over the catalog for narrowing by category, availability
+ * status and tag. Each book gets a dense ordinal and each facet value a
+ * BitSet of the ordinals having it, so filtering is a few bitmap ANDs and
+ * a facet count is the cardinality of one.
+ * Kept in step by the library service on add/update/delete and on every
+ * availability status change.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_BookFacetIndex {
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // by ordinal - null once the book is removed
+    private final List<K2530341_Book> books = new ArrayList<>();
+    // facet values each ordinal was indexed under (the book may have been edited since)
+    private final List<String> indexedCategory = new ArrayList<>();
+    private final List<K2530341_AvailabilityStatus> indexedStatus = new ArrayList<>();
+    private final List<Set<String>> indexedTags = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Map<String, BitSet> byCategory = new TreeMap<>();
+    private final Map<K2530341_AvailabilityStatus, BitSet> byStatus = new EnumMap<>(K2530341_AvailabilityStatus.class);
+    private final Map<String, BitSet> byTag = new TreeMap<>();
+    
+    /**
+     * Add or re-index a book.
+     * @param book Book to index
+     */
+    synchronized void index(K2530341_Book book) {
+        Set<String> tags = tags(book);
+        Integer existing = ordinals.get(book.getBookId());
+        int ordinal;
+        if (existing != null) {
+            // an edit keeps the book's ordinal - only its facet bits move
+            ordinal = existing;
+            clearFacets(ordinal);
+            books.set(ordinal, book);
+            indexedCategory.set(ordinal, book.getCategory());
+            indexedStatus.set(ordinal, book.getAvailabilityStatus());
+            indexedTags.set(ordinal, tags);
+        } else {
+            ordinal = books.size();
+            ordinals.put(book.getBookId(), ordinal);
+            books.add(book);
+            indexedCategory.add(book.getCategory());
+            indexedStatus.add(book.getAvailabilityStatus());
+            indexedTags.add(tags);
+        }
+        live.set(ordinal);
+        if (book.getCategory() != null) {
+            byCategory.computeIfAbsent(book.getCategory(), c -> new BitSet()).set(ordinal);
+        }
+        if (book.getAvailabilityStatus() != null) {
+            byStatus.computeIfAbsent(book.getAvailabilityStatus(), s -> new BitSet()).set(ordinal);
+        }
+        for (String tag : tags) {
+            byTag.computeIfAbsent(tag, t -> new BitSet()).set(ordinal);
+        }
+    }
+    
+    /**
+     * Remove a book from the index.
+     * @param bookId ID of the book to remove
+     */
+    synchronized void remove(String bookId) {
+        Integer ordinal = ordinals.remove(bookId);
+        if (ordinal == null) {
+            return;
+        }
+        clearFacets(ordinal);
+        live.clear(ordinal);
+        books.set(ordinal, null);
+        indexedCategory.set(ordinal, null);
+        indexedStatus.set(ordinal, null);
+        indexedTags.set(ordinal, null);
+    }
+    
+    /**
+     * @return Ordinals handed out so far, including ones freed by removals
+     */
+    synchronized int ordinalCount() {
+        return books.size();
+    }
+    
+    /**
+     * Move a book to the status bitmap matching its current availability status.
+     * @param book Book whose status may have changed
+     */
+    synchronized void updateStatus(K2530341_Book book) {
+        Integer ordinal = ordinals.get(book.getBookId());
+        if (ordinal == null) {
+            return;
+        }
+        K2530341_AvailabilityStatus status = book.getAvailabilityStatus();
+        if (status != indexedStatus.get(ordinal)) {
+            clear(byStatus, indexedStatus.get(ordinal), ordinal);
+            if (status != null) {
+                byStatus.computeIfAbsent(status, s -> new BitSet()).set(ordinal);
+            }
+            indexedStatus.set(ordinal, status);
+        }
+    }
+    
+    /**
+     * Rebuild the index from scratch (after loading data); also compacts
+     * the ordinals left free by removed books.
+     * @param allBooks Every book
+     */
+    synchronized void rebuild(Collection<K2530341_Book> allBooks) {
+        ordinals.clear();
+        books.clear();
+        indexedCategory.clear();
+        indexedStatus.clear();
+        indexedTags.clear();
+        live.clear();
+        byCategory.clear();
+        byStatus.clear();
+        byTag.clear();
+        allBooks.forEach(this::index);
+    }
+    
+    /**
+     * Filter books by facet and count the facet values of the result.
+     * Each facet's counts ignore that facet's own filter, so the counts show
+     * how many books picking another value of the facet would give.
+     * @param candidates Books to filter (e.g. text search hits), or null for the whole catalog
+     * @param category Category to keep, or null for any
+     * @param status Availability status to keep, or null for any
+     * @param tag Tag to keep, or null for any
+     * @return Matching books (in candidate order) with per-facet counts
+     */
+    synchronized K2530341_FacetResult search(List<K2530341_Book> candidates, String category,
+                                K2530341_AvailabilityStatus status, String tag) {
+        BitSet base = (BitSet) live.clone();
+        if (candidates != null) {
+            base = new BitSet();
+            for (K2530341_Book book : candidates) {
+                Integer ordinal = ordinals.get(book.getBookId());
+                if (ordinal != null) {
+                    base.set(ordinal);
+                }
+            }
+        }
+        BitSet categoryBits = category == null ? null : byCategory.getOrDefault(category, new BitSet());
+        BitSet statusBits = status == null ? null : byStatus.getOrDefault(status, new BitSet());
+        BitSet tagBits = tag == null ? null : byTag.getOrDefault(tag, new BitSet());
+        
+        BitSet matching = and(base, categoryBits, statusBits, tagBits);
+        List<K2530341_Book> results = new ArrayList<>(matching.cardinality());
+        if (candidates != null) {
+            for (K2530341_Book book : candidates) {
+                Integer ordinal = ordinals.get(book.getBookId());
+                if (ordinal != null && matching.get(ordinal)) {
+                    results.add(book);
+                }
+            }
+        } else {
+            results.addAll(books(matching));
+        }
+        
+        return new K2530341_FacetResult(results,
+            count(byCategory, and(base, null, statusBits, tagBits), new LinkedHashMap<>()),
+            count(byStatus, and(base, categoryBits, null, tagBits), new EnumMap<>(K2530341_AvailabilityStatus.class)),
+            count(byTag, and(base, categoryBits, statusBits, null), new LinkedHashMap<>()));
+    }
+    
+    /**
+     * Get the bitmap of books matching a filter.
+     * @param filter Book filter
+     * @return Ordinals of the matching books
+     */
+    synchronized BitSet select(K2530341_BookFilter filter) {
+        BitSet result = (BitSet) live.clone();
+        if (!filter.getStatuses().isEmpty()) {
+            result.and(anyOf(byStatus, filter.getStatuses()));
+        }
+        if (!filter.getCategories().isEmpty()) {
+            result.and(anyOf(byCategory, filter.getCategories()));
+        }
+        for (String tag : filter.getTags()) {
+            result.and(byTag.getOrDefault(tag, new BitSet()));
+        }
+        return result;
+    }
+    
+    /**
+     * Get the books matching a filter.
+     * @param filter Book filter
+     * @return Matching books in ordinal order
+     */
+    synchronized List<K2530341_Book> find(K2530341_BookFilter filter) {
+        return books(select(filter));
+    }
+    
+    private List<K2530341_Book> books(BitSet selection) {
+        List<K2530341_Book> result = new ArrayList<>(selection.cardinality());
+        for (int ordinal = selection.nextSetBit(0); ordinal >= 0; ordinal = selection.nextSetBit(ordinal + 1)) {
+            result.add(books.get(ordinal));
+        }
+        return result;
+    }
+    
+    private static <K> BitSet anyOf(Map<K, BitSet> facet, Set<K> keys) {
+        BitSet result = new BitSet();
+        for (K key : keys) {
+            BitSet bits = facet.get(key);
+            if (bits != null) {
+                result.or(bits);
+            }
+        }
+        return result;
+    }
+    
+    private static BitSet and(BitSet base, BitSet... filters) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+    
+    // count of each facet value within the selection; values with no books are left out
+    private static <K> Map<K, Integer> count(Map<K, BitSet> facet, BitSet selection, Map<K, Integer> counts) {
+        for (Map.Entry<K, BitSet> entry : facet.entrySet()) {
+            BitSet bits = (BitSet) entry.getValue().clone();
+            bits.and(selection);
+            if (!bits.isEmpty()) {
+                counts.put(entry.getKey(), bits.cardinality());
+            }
+        }
+        return counts;
+    }
+    
+    // take an ordinal out of every facet bitmap it was indexed under
+    private void clearFacets(int ordinal) {
+        clear(byCategory, indexedCategory.get(ordinal), ordinal);
+        clear(byStatus, indexedStatus.get(ordinal), ordinal);
+        for (String tag : indexedTags.get(ordinal)) {
+            clear(byTag, tag, ordinal);
+        }
+    }
+    
+    private static <K> void clear(Map<K, BitSet> facet, K key, int ordinal) {
+        if (key == null) {
+            return;
+        }
+        BitSet bits = facet.get(key);
+        if (bits != null) {
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                facet.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * Split a book's optional tags (separated by ';' or ',') into distinct tags.
+     * @param book Book
+     * @return Trimmed, non-empty tags
+     */
+    static Set<String> tags(K2530341_Book book) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (book.getOptionalTags() != null) {
+            for (String tag : book.getOptionalTags().split("[;,]")) {
+                if (!tag.isBlank()) {
+                    tags.add(tag.trim());
+                }
+            }
+        }
+        return tags;
+    }
+}
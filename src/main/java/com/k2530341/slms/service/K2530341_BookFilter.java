@@ -0,0 +1,46 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
+
+import java.util.*;
+
+/**
+ * Composable filter over the catalog, answered from the facet bitmaps.
+ * A book matches when its status is one of the given statuses, its category
+ * is one of the given categories and it carries every given tag; a facet
+ * with nothing given does not filter.
+ * e.g. new K2530341_BookFilter().withStatus(AVAILABLE).withCategory("Programming").withTag("beginner")
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_BookFilter {
+    private final Set<K2530341_AvailabilityStatus> statuses = EnumSet.noneOf(K2530341_AvailabilityStatus.class);
+    private final Set<String> categories = new LinkedHashSet<>();
+    private final Set<String> tags = new LinkedHashSet<>();
+    
+    public K2530341_BookFilter withStatus(K2530341_AvailabilityStatus... statuses) {
+        this.statuses.addAll(Arrays.asList(statuses));
+        return this;
+    }
+    
+    public K2530341_BookFilter withCategory(String... categories) {
+        this.categories.addAll(Arrays.asList(categories));
+        return this;
+    }
+    
+    public K2530341_BookFilter withTag(String... tags) {
+        this.tags.addAll(Arrays.asList(tags));
+        return this;
+    }
+    
+    Set<K2530341_AvailabilityStatus> getStatuses() {
+        return statuses;
+    }
+    
+    Set<String> getCategories() {
+        return categories;
+    }
+    
+    Set<String> getTags() {
+        return tags;
+    }
+}
@@ -0,0 +1,176 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_Book;
+
+import java.util.*;
+
+/**
+ * Inverted index over the book catalog for full-text search.
+ * Title, author, category, ISBN and optional tags are split into lowercase
+ * letter/digit tokens; each token maps to the books containing it with a
+ * field-weighted score. Queries are multi-term AND, every term matches as a
+ * prefix, and results are ranked by score (exact token hits count double).
+ * Kept in step by the library service on add/update/delete.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_BookSearchIndex {
+    // field weights - a hit in the title matters more than one in the tags
+    private static final int TITLE_WEIGHT = 5;
+    private static final int AUTHOR_WEIGHT = 4;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int TAG_WEIGHT = 2;
+    private static final int ISBN_WEIGHT = 1;
+    
+    // term -> (bookId -> weight)
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // sorted terms for prefix lookups
+    private final NavigableSet<String> terms = new TreeSet<>();
+    // terms indexed for each book, so the book can be removed again
+    private final Map<String, Set<String>> bookTerms = new HashMap<>();
+    
+    /**
+     * Add or re-index a book.
+     * @param book Book to index
+     */
+    synchronized void index(K2530341_Book book) {
+        remove(book.getBookId());
+        
+        Map<String, Integer> weights = new HashMap<>();
+        addField(weights, book.getTitle(), TITLE_WEIGHT);
+        addField(weights, book.getAuthor(), AUTHOR_WEIGHT);
+        addField(weights, book.getCategory(), CATEGORY_WEIGHT);
+        addField(weights, book.getOptionalTags(), TAG_WEIGHT);
+        addField(weights, book.getIsbn(), ISBN_WEIGHT);
+        if (book.getIsbn() != null) {
+            // also index the ISBN without separators so "978013" finds "978-0-13-..."
+            String compact = book.getIsbn().replaceAll("[^0-9A-Za-z]", "").toLowerCase();
+            if (!compact.isEmpty()) {
+                weights.merge(compact, ISBN_WEIGHT, Integer::sum);
+            }
+        }
+        
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(book.getBookId(), entry.getValue());
+            terms.add(entry.getKey());
+        }
+        bookTerms.put(book.getBookId(), weights.keySet());
+    }
+    
+    /**
+     * Remove a book from the index.
+     * @param bookId ID of the book to remove
+     */
+    synchronized void remove(String bookId) {
+        Set<String> indexed = bookTerms.remove(bookId);
+        if (indexed == null) {
+            return;
+        }
+        for (String term : indexed) {
+            Map<String, Integer> books = postings.get(term);
+            books.remove(bookId);
+            if (books.isEmpty()) {
+                postings.remove(term);
+                terms.remove(term);
+            }
+        }
+    }
+    
+    /**
+     * Rebuild the index from scratch (after loading data).
+     * @param books Every book
+     */
+    synchronized void rebuild(Collection<K2530341_Book> books) {
+        postings.clear();
+        terms.clear();
+        bookTerms.clear();
+        books.forEach(this::index);
+    }
+    
+    /**
+     * Find the books matching every query term (as a prefix), best match first.
+     * @param query Free-text query
+     * @return IDs of the matching books, ranked by relevance
+     */
+    synchronized List<String> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<String, Integer> scores = null;
+        for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+            Map<String, Integer> termScores = matchPrefix(queryTerm);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // AND - keep only books matching every term so far
+                Map<String, Integer> both = new HashMap<>();
+                Map<String, Integer> small = scores.size() <= termScores.size() ? scores : termScores;
+                Map<String, Integer> large = small == scores ? termScores : scores;
+                for (Map.Entry<String, Integer> entry : small.entrySet()) {
+                    Integer other = large.get(entry.getKey());
+                    if (other != null) {
+                        both.put(entry.getKey(), entry.getValue() + other);
+                    }
+                }
+                scores = both;
+            }
+            if (scores.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+        
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey()));
+        List<String> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, Integer> entry : ranked) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+    
+    // best score per book over all terms starting with the prefix; exact hits count double
+    private Map<String, Integer> matchPrefix(String prefix) {
+        Map<String, Integer> scores = new HashMap<>();
+        for (String term : terms.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            int factor = term.equals(prefix) ? 2 : 1;
+            for (Map.Entry<String, Integer> posting : postings.get(term).entrySet()) {
+                scores.merge(posting.getKey(), posting.getValue() * factor, Math::max);
+            }
+        }
+        return scores;
+    }
+    
+    private static void addField(Map<String, Integer> weights, String text, int weight) {
+        for (String token : tokenize(text)) {
+            weights.merge(token, weight, Integer::sum);
+        }
+    }
+    
+    /**
+     * Split text into lowercase letter/digit tokens.
+     * @param text Text to split (may be null)
+     * @return Tokens in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,141 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.K2530341_Borrow;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Secondary indexes over the borrow records, kept in step by the library service.
+ * Holds every borrow per user, and the open (not returned) borrows per user,
+ * per book and by due date, so lookups cost a user's or book's own records
+ * instead of the whole borrow history. Open borrows are kept in a navigable
+ * map keyed by the due date's epoch-day, so overdue and due-soon queries are
+ * range queries that only touch matching records.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_BorrowIndex {
+    private final Map<String, List<K2530341_Borrow>> byUser = new HashMap<>();
+    private final Map<String, Set<K2530341_Borrow>> openByUser = new HashMap<>();
+    private final Map<String, Set<K2530341_Borrow>> openByBook = new HashMap<>();
+    private final NavigableMap<Long, Set<K2530341_Borrow>> openByDueDay = new TreeMap<>();
+    
+    /**
+     * Index a new (or newly loaded) borrow record.
+     * @param borrow Borrow record
+     */
+    synchronized void add(K2530341_Borrow borrow) {
+        byUser.computeIfAbsent(borrow.getUserId(), id -> new ArrayList<>()).add(borrow);
+        if (borrow.getReturnDate() == null) {
+            openByDueDay.computeIfAbsent(borrow.getDueDate().toEpochDay(), day -> new LinkedHashSet<>()).add(borrow);
+            openByUser.computeIfAbsent(borrow.getUserId(), id -> new LinkedHashSet<>()).add(borrow);
+            openByBook.computeIfAbsent(borrow.getBookId(), id -> new LinkedHashSet<>()).add(borrow);
+        }
+    }
+    
+    /**
+     * Move a borrow out of the open indexes once its return date is set.
+     * @param borrow Returned borrow record
+     */
+    synchronized void markReturned(K2530341_Borrow borrow) {
+        removeFrom(openByDueDay, borrow.getDueDate().toEpochDay(), borrow);
+        removeFrom(openByUser, borrow.getUserId(), borrow);
+        removeFrom(openByBook, borrow.getBookId(), borrow);
+    }
+    
+    /**
+     * Put a borrow back into the open indexes once its return is undone.
+     * @param borrow Reopened borrow record
+     */
+    synchronized void markReopened(K2530341_Borrow borrow) {
+        openByDueDay.computeIfAbsent(borrow.getDueDate().toEpochDay(), day -> new LinkedHashSet<>()).add(borrow);
+        openByUser.computeIfAbsent(borrow.getUserId(), id -> new LinkedHashSet<>()).add(borrow);
+        openByBook.computeIfAbsent(borrow.getBookId(), id -> new LinkedHashSet<>()).add(borrow);
+    }
+    
+    /**
+     * Rebuild the indexes from scratch (after loading data).
+     * @param borrows Every borrow record
+     */
+    synchronized void rebuild(Collection<K2530341_Borrow> borrows) {
+        byUser.clear();
+        openByUser.clear();
+        openByBook.clear();
+        openByDueDay.clear();
+        borrows.forEach(this::add);
+    }
+    
+    synchronized List<K2530341_Borrow> getByUser(String userId) {
+        return new ArrayList<>(byUser.getOrDefault(userId, Collections.emptyList()));
+    }
+    
+    synchronized List<K2530341_Borrow> getOpenByUser(String userId) {
+        return new ArrayList<>(openByUser.getOrDefault(userId, Collections.emptySet()));
+    }
+    
+    synchronized List<K2530341_Borrow> getOpenByBook(String bookId) {
+        return new ArrayList<>(openByBook.getOrDefault(bookId, Collections.emptySet()));
+    }
+    
+    /**
+     * Check whether a user has any book out.
+     * @param userId User ID
+     * @return true if the user has at least one open borrow
+     */
+    synchronized boolean hasOpenBorrows(String userId) {
+        return openByUser.containsKey(userId);
+    }
+    
+    /**
+     * Check whether a user currently has a book out.
+     * @param bookId Book ID
+     * @param userId User ID
+     * @return true if there is an open borrow of the book by the user
+     */
+    synchronized boolean hasOpenBorrow(String bookId, String userId) {
+        for (K2530341_Borrow borrow : openByBook.getOrDefault(bookId, Collections.emptySet())) {
+            if (borrow.getUserId().equals(userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get the open borrows due before a date (i.e. overdue on that date).
+     * @param date Reference date
+     * @return Matching borrows, earliest due first
+     */
+    synchronized List<K2530341_Borrow> getOpenDueBefore(LocalDate date) {
+        return flatten(openByDueDay.headMap(date.toEpochDay(), false));
+    }
+    
+    /**
+     * Get the open borrows due between two dates, both inclusive.
+     * @param from First due date
+     * @param to Last due date
+     * @return Matching borrows, earliest due first
+     */
+    synchronized List<K2530341_Borrow> getOpenDueBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return new ArrayList<>();
+        }
+        return flatten(openByDueDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+    }
+    
+    private static List<K2530341_Borrow> flatten(Map<Long, Set<K2530341_Borrow>> days) {
+        List<K2530341_Borrow> borrows = new ArrayList<>();
+        days.values().forEach(borrows::addAll);
+        return borrows;
+    }
+    
+    private static <K> void removeFrom(Map<K, Set<K2530341_Borrow>> index, K key, K2530341_Borrow borrow) {
+        Set<K2530341_Borrow> borrows = index.get(key);
+        if (borrows != null) {
+            borrows.remove(borrow);
+            if (borrows.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.k2530341.slms.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer event loop for the mutating operations (the borrow/return/
+ * reserve/cancel commands, book/user CRUD and the timing wheel's hold and
+ * reminder events). Submissions go into a bounded
+ * ring buffer (callers block when it is full) and one writer thread drains
+ * it in batches, applying each mutation in submission order and persisting
+ * once at the end of the batch rather than once per mutation. A submission's
+ * future completes after its batch has been handed to the journal.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_CommandPipeline implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private final K2530341_LibraryService libraryService;
+    private final BlockingQueue<Task<?>> ring;
+    private final int maxBatch;
+    private final Thread writer;
+    // submitters share it, close() takes it exclusively - so nothing is queued behind STOP
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+    
+    /**
+     * One submitted mutation and its outcome.
+     */
+    private static final class Task<T> {
+        private final Supplier<T> mutation;
+        private final CompletableFuture<T> future;
+        private T result;
+        private RuntimeException error;
+        
+        private Task(Supplier<T> mutation, CompletableFuture<T> future) {
+            this.mutation = mutation;
+            this.future = future;
+        }
+        
+        private void apply() {
+            try {
+                result = mutation.get();
+            } catch (RuntimeException e) {
+                System.err.println("Error in pipelined operation: " + e.getMessage());
+                error = e;
+            }
+        }
+        
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+    
+    // queued by close(); the writer stops when it reaches it
+    private static final Task<Void> STOP = new Task<>(() -> null, new CompletableFuture<>());
+    
+    public K2530341_CommandPipeline(K2530341_LibraryService libraryService) {
+        this(libraryService, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param libraryService Service the mutations are applied to
+     * @param capacity Ring buffer size, also the largest batch
+     */
+    public K2530341_CommandPipeline(K2530341_LibraryService libraryService, int capacity) {
+        this.libraryService = libraryService;
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = capacity;
+        this.writer = new Thread(this::run, "slms-command-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Queue a mutation for the writer thread, e.g.
+     * pipeline.submit(() -> commandManager.executeCommand(borrowCommand)).
+     * Blocks while the ring buffer is full.
+     * @param mutation Operation to apply
+     * @return Future completed with the operation's result once its batch is persisted
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> mutation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submit(mutation, future);
+        return future;
+    }
+    
+    /**
+     * Queue a mutation whose outcome goes to a future the caller already
+     * holds, so anything chained onto it is in place before the writer can
+     * complete it.
+     * @param mutation Operation to apply
+     * @param future Future to complete once the mutation's batch is persisted
+     */
+    <T> void submit(Supplier<T> mutation, CompletableFuture<T> future) {
+        Task<T> task = new Task<>(mutation, future);
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                task.future.completeExceptionally(new IllegalStateException("Command pipeline is closed"));
+            } else {
+                ring.put(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Wait until every mutation queued so far has been applied and persisted.
+     * Returns at once if the pipeline is closed.
+     */
+    public void drain() {
+        try {
+            submit(() -> null).join();
+        } catch (RuntimeException e) {
+            // closed - close() already applied what was queued
+        }
+    }
+    
+    /**
+     * Apply what is already queued, then stop the writer thread.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            ring.put(STOP);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        List<Task<?>> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(ring.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            ring.drainTo(batch, maxBatch - 1);
+            
+            int end = batch.indexOf(STOP);
+            if (end >= 0) {
+                // nothing can be queued behind STOP, so this is the last batch
+                batch.remove(end);
+                stopping = true;
+            }
+            libraryService.runBatch(() -> batch.forEach(Task::apply));
+            batch.forEach(Task::complete);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_AvailabilityStatus;
+import com.k2530341.slms.model.book.K2530341_Book;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a faceted book search: the matching books plus, for each facet,
+ * how many books each value would give.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_FacetResult {
+    private final List<K2530341_Book> books;
+    private final Map<String, Integer> categoryCounts;
+    private final Map<K2530341_AvailabilityStatus, Integer> statusCounts;
+    private final Map<String, Integer> tagCounts;
+    
+    public K2530341_FacetResult(List<K2530341_Book> books, Map<String, Integer> categoryCounts,
+                                Map<K2530341_AvailabilityStatus, Integer> statusCounts, Map<String, Integer> tagCounts) {
+        this.books = Collections.unmodifiableList(books);
+        this.categoryCounts = Collections.unmodifiableMap(categoryCounts);
+        this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        this.tagCounts = Collections.unmodifiableMap(tagCounts);
+    }
+    
+    public List<K2530341_Book> getBooks() {
+        return books;
+    }
+    
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+    
+    public Map<K2530341_AvailabilityStatus, Integer> getStatusCounts() {
+        return statusCounts;
+    }
+    
+    public Map<String, Integer> getTagCounts() {
+        return tagCounts;
+    }
+}
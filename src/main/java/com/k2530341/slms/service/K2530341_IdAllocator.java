@@ -0,0 +1,181 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.persistence.K2530341_IdSequenceManager;
+import com.librarymanage.smartlibrarymanagement.util.K2530341_IdGenerator;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the structured IDs (BK-001, STU-001, BR-0001, ...) from one
+ * atomic sequence per prefix. Numbers are leased from disk in blocks: the
+ * stored high-water mark is moved a block ahead before any number in the
+ * block is used, so creators only meet on the atomic counter and a restart
+ * resumes from the mark instead of scanning every loaded ID. A crash can
+ * leave a gap of at most one block; a checkpoint on clean save/shutdown
+ * pulls the marks back to the numbers actually used.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_IdAllocator {
+    static final int DEFAULT_BLOCK_SIZE = 32;
+    
+    private static final String[] PREFIXES = {
+        K2530341_IdGenerator.BOOK_PREFIX, K2530341_IdGenerator.STUDENT_PREFIX,
+        K2530341_IdGenerator.FACULTY_PREFIX, K2530341_IdGenerator.GUEST_PREFIX,
+        K2530341_IdGenerator.BORROW_PREFIX, K2530341_IdGenerator.RESERVATION_PREFIX,
+        K2530341_IdGenerator.NOTIFICATION_PREFIX
+    };
+    
+    private static final class Sequence {
+        final AtomicInteger next = new AtomicInteger(1);
+        // numbers below this are covered by the stored mark
+        volatile int leasedUntil = 1;
+    }
+    
+    private final K2530341_IdSequenceManager store;
+    private final int blockSize;
+    private final Map<String, Sequence> sequences = new LinkedHashMap<>();
+    
+    /**
+     * @param store Where the high-water marks are kept
+     * @param blockSize Numbers leased per write of the marks
+     */
+    K2530341_IdAllocator(K2530341_IdSequenceManager store, int blockSize) {
+        this.store = store;
+        this.blockSize = blockSize;
+        for (String prefix : PREFIXES) {
+            sequences.put(prefix, new Sequence());
+        }
+    }
+    
+    /**
+     * Resume every sequence from its stored mark.
+     * @return false if no marks were stored yet - seed from the loaded IDs then
+     */
+    synchronized boolean load() {
+        Map<String, Integer> marks = store.load();
+        if (marks == null) {
+            return false;
+        }
+        sequences.forEach((prefix, sequence) -> {
+            int mark = Math.max(1, marks.getOrDefault(prefix, 1));
+            sequence.next.set(mark);
+            sequence.leasedUntil = mark;
+        });
+        return true;
+    }
+    
+    /**
+     * Move a sequence past an existing ID without leasing (one-off scan of
+     * data written before the marks existed; follow with {@link #checkpoint}).
+     * @param id Loaded ID - IDs without a known prefix are ignored
+     */
+    void seed(String id) {
+        Sequence sequence = sequenceOf(id);
+        if (sequence != null) {
+            sequence.next.accumulateAndGet(K2530341_IdGenerator.parse(prefixOf(id), id) + 1, Math::max);
+        }
+    }
+    
+    /**
+     * Make sure a number that was chosen elsewhere (an ID typed in when
+     * adding a book/user) is never handed out again.
+     * @param id ID that was just used
+     */
+    void observe(String id) {
+        Sequence sequence = sequenceOf(id);
+        if (sequence == null) {
+            return;
+        }
+        int number = K2530341_IdGenerator.parse(prefixOf(id), id);
+        sequence.next.accumulateAndGet(number + 1, Math::max);
+        if (number >= sequence.leasedUntil) {
+            lease(sequence, number);
+        }
+    }
+    
+    /**
+     * Take the next ID of a sequence.
+     * @param prefix ID prefix, e.g. {@link K2530341_IdGenerator#BORROW_PREFIX}
+     * @return New ID
+     */
+    String next(String prefix) {
+        Sequence sequence = sequences.get(prefix);
+        int number = sequence.next.getAndIncrement();
+        if (number >= sequence.leasedUntil) {
+            lease(sequence, number);
+        }
+        return K2530341_IdGenerator.format(prefix, number);
+    }
+    
+    /**
+     * Take a run of consecutive IDs from a sequence in one step.
+     * @param prefix ID prefix
+     * @param count Number of IDs wanted
+     * @return New IDs, in order
+     */
+    List<String> next(String prefix, int count) {
+        Sequence sequence = sequences.get(prefix);
+        int first = sequence.next.getAndAdd(count);
+        int last = first + count - 1;
+        if (last >= sequence.leasedUntil) {
+            lease(sequence, last);
+        }
+        List<String> ids = new ArrayList<>(count);
+        for (int number = first; number <= last; number++) {
+            ids.add(K2530341_IdGenerator.format(prefix, number));
+        }
+        return ids;
+    }
+    
+    /**
+     * Show the ID {@link #next} would return, without taking it.
+     * @param prefix ID prefix
+     * @return Next ID of the sequence
+     */
+    String peek(String prefix) {
+        return K2530341_IdGenerator.format(prefix, sequences.get(prefix).next.get());
+    }
+    
+    /**
+     * Store the marks at the numbers actually used, giving back the unused
+     * rest of each leased block.
+     */
+    synchronized void checkpoint() {
+        Map<String, Integer> marks = new LinkedHashMap<>();
+        sequences.forEach((prefix, sequence) -> {
+            // lower the bar first so anyone taking a number from here on
+            // waits for the lock, then read the count it must cover
+            sequence.leasedUntil = sequence.next.get();
+            marks.put(prefix, sequence.next.get());
+        });
+        store.save(marks);
+        sequences.forEach((prefix, sequence) -> sequence.leasedUntil = marks.get(prefix));
+    }
+    
+    // store a mark a block ahead before the number is used
+    private synchronized void lease(Sequence sequence, int number) {
+        if (number < sequence.leasedUntil) {
+            return; // another thread leased past it meanwhile
+        }
+        int until = number + blockSize;
+        Map<String, Integer> marks = new LinkedHashMap<>();
+        sequences.forEach((prefix, other) -> marks.put(prefix, other == sequence ? until : other.leasedUntil));
+        store.save(marks);
+        sequence.leasedUntil = until;
+    }
+    
+    private Sequence sequenceOf(String id) {
+        String prefix = prefixOf(id);
+        return prefix == null ? null : sequences.get(prefix);
+    }
+    
+    private static String prefixOf(String id) {
+        for (String prefix : PREFIXES) {
+            if (K2530341_IdGenerator.parse(prefix, id) >= 0) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+}
@@ -7,168 +7,761 @@ import com.k2530341.slms.model.reservation.*;
 import com.k2530341.slms.model.notification.*;
 import com.k2530341.slms.patterns.strategy.*;
 import com.k2530341.slms.persistence.*;
+import com.librarymanage.smartlibrarymanagement.util.K2530341_IdGenerator;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Library Service - handles all the main business operations
  * @author Sajidh (K2530341)
  * This class manages books, users, borrowing, reservations etc.
+ * Safe to share between threads (e.g. the UI and a background job):
+ * operations lock the stripes of the book/user they change, so checkouts of
+ * different books run in parallel while borrow/return/reserve of the same
+ * book are serialised. The maps and indexes are concurrent or synchronised,
+ * and handing changes to the journal is serialised by one persistence lock.
  */
+// the stripe guards are held by try-with-resources and never referenced in the body
+@SuppressWarnings("try")
 public class K2530341_LibraryService {
     // max fine limit - user cannot borrow if they exceed this
     public static final double MAX_UNPAID_LIMIT = 1000.0;
+    // journal records allowed to pile up before they are folded into the CSV files
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 500;
+    // saves arriving within this many milliseconds are written to the journal together
+    public static final long DEFAULT_FLUSH_WINDOW_MILLIS = 50;
+    // how long a NOTIFIED reservation holds the book for its user
+    public static final long HOLD_HOURS = 48;
+    // automatic reminders: due-soon this many days before the due date, then
+    // an overdue alert the day after it and again every checkpoint interval
+    public static final int DUE_SOON_DAYS = 3;
+    public static final int OVERDUE_CHECKPOINT_DAYS = 7;
     
-    // using HashMaps to store all data - easy to lookup by ID
-    private final Map<String, K2530341_Book> books = new HashMap<>();
-    private final Map<String, K2530341_User> users = new HashMap<>();
-    private final Map<String, K2530341_Borrow> borrows = new HashMap<>();
-    private final Map<String, K2530341_Reservation> reservations = new HashMap<>();
-    private final Map<String, K2530341_Notification> notifications = new HashMap<>();
+    // using maps to store all data - easy to lookup by ID
+    // entities the panes page through are kept sorted by ID so a page is a tailMap walk
+    private final NavigableMap<String, K2530341_Book> books = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, K2530341_User> users = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, K2530341_Borrow> borrows = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, K2530341_Reservation> reservations = new ConcurrentSkipListMap<>();
+    private final Map<String, K2530341_Notification> notifications = new ConcurrentHashMap<>();
+    
+    // per-book/per-user locks, keyed "book:<id>" and "user:<id>"
+    private final K2530341_LockStripes locks = new K2530341_LockStripes(64);
+    // serialises draining the dirty set into the journal and compaction hand-off
+    private final Object persistLock = new Object();
+    // set on the command pipeline's writer while it applies a batch
+    private final ThreadLocal<Boolean> batching = ThreadLocal.withInitial(() -> false);
+    // copies of the books/users/borrows for readers, republished with every persisted change
+    private volatile K2530341_LibrarySnapshot readSnapshot = K2530341_LibrarySnapshot.EMPTY;
+    
+    // pending queue per book and notified reservations per (book, user)
+    private final K2530341_ReservationIndex reservationIndex = new K2530341_ReservationIndex();
+    // borrows per user, open borrows per user and per book
+    private final K2530341_BorrowIndex borrowIndex = new K2530341_BorrowIndex();
+    // full-text index over the catalog
+    private final K2530341_BookSearchIndex searchIndex = new K2530341_BookSearchIndex();
+    private final K2530341_TrigramIndex trigramIndex = new K2530341_TrigramIndex();
+    private final K2530341_BkTreeIndex fuzzyIndex = new K2530341_BkTreeIndex();
+    private final K2530341_BookFacetIndex facetIndex = new K2530341_BookFacetIndex();
+    private final K2530341_UserBitmapIndex userIndex = new K2530341_UserBitmapIndex();
+    // swapped for a fresh build in the background when titles change; checkouts bump its popularity in place
+    private volatile K2530341_BookAutocomplete autocomplete = K2530341_BookAutocomplete.build(List.of());
+    // taken around a checkout's borrow count bump and around publishing a new build, so no bump is lost
+    private final Object autocompleteLock = new Object();
+    // set while a rebuild is queued but has not started reading the catalog
+    private final AtomicBoolean autocompleteStale = new AtomicBoolean();
+    private final ExecutorService autocompleteBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "slms-autocomplete-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     // CSV managers for loading/saving data
-    private final K2530341_BookCSVManager bookCSV = new K2530341_BookCSVManager();
-    private final K2530341_UserCSVManager userCSV = new K2530341_UserCSVManager();
-    private final K2530341_BorrowCSVManager borrowCSV = new K2530341_BorrowCSVManager();
-    private final K2530341_ReservationCSVManager reservationCSV = new K2530341_ReservationCSVManager();
-    private final K2530341_NotificationCSVManager notificationCSV = new K2530341_NotificationCSVManager();
-    
-    // counters for generating IDs
-    private int borrowIdCounter = 1;
-    private int reservationIdCounter = 1;
-    private int notificationIdCounter = 1;
-    private int bookIdCounter = 1;
-    private int studentIdCounter = 1;
-    private int facultyIdCounter = 1;
-    private int guestIdCounter = 1;
+    private final K2530341_BookCSVManager bookCSV;
+    private final K2530341_UserCSVManager userCSV;
+    private final K2530341_BorrowCSVManager borrowCSV;
+    private final K2530341_ReservationCSVManager reservationCSV;
+    private final K2530341_NotificationCSVManager notificationCSV;
+    
+    private final K2530341_BinarySnapshotManager binarySnapshot;
+    private final K2530341_SnapshotFormat snapshotFormat;
+    private final K2530341_JournalManager journal;
+    private final K2530341_JournalFlusher flusher;
+    // the single writer: the UI's mutations (through the async service) and the timing wheel's events
+    private final K2530341_CommandPipeline pipeline;
+    
+    // entities changed since the last save - only these are journaled on the next flush
+    private final Map<K2530341_DataTable, Set<String>> dirtyIds = new EnumMap<>(K2530341_DataTable.class);
+    // tables with journal records that are not yet in the CSV snapshots
+    private final EnumSet<K2530341_DataTable> tablesSinceCompaction = EnumSet.noneOf(K2530341_DataTable.class);
+    private final K2530341_PersistenceStats persistenceStats = new K2530341_PersistenceStats();
+    
+    // background thread that folds the journal into the CSV snapshots
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "slms-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Future<?> compaction;
+    // tables of a compaction whose snapshot write failed - set by the compactor, retried by the next one
+    private final Set<K2530341_DataTable> failedCompactionTables = EnumSet.noneOf(K2530341_DataTable.class);
+    private volatile int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    
+    // ID sequences (BK-, STU-, BR-, ...) resumed from stored high-water marks
+    private final K2530341_IdAllocator idAllocator;
+    
+    // timed events (hold expiry, due-soon reminders, overdue checkpoints) - each fires when due, no sweeps
+    private final K2530341_TimingWheel timers = new K2530341_TimingWheel(K2530341_TimingWheel.DEFAULT_TICK_MILLIS, System.currentTimeMillis());
+    // the pending event per NOTIFIED reservation and per open loan, so they can be cancelled
+    private final Map<String, K2530341_TimingWheel.Timeout> holdTimers = new ConcurrentHashMap<>();
+    private final Map<String, K2530341_TimingWheel.Timeout> loanTimers = new ConcurrentHashMap<>();
+    private volatile Duration holdDuration = Duration.ofHours(HOLD_HOURS);
+    private volatile boolean autoReminders = true;
+    
+    public K2530341_LibraryService() {
+        this("data");
+    }
+    
+    /**
+     * Create a service that reads and writes its files in the given directory,
+     * using the snapshot format chosen by the "slms.persistence" system property.
+     * @param dataDir Directory holding the data files
+     */
+    public K2530341_LibraryService(String dataDir) {
+        this(dataDir, K2530341_SnapshotFormat.configured());
+    }
+    
+    /**
+     * Create a service that reads and writes its files in the given directory.
+     * @param dataDir Directory holding the data files
+     * @param snapshotFormat Format used for startup loading and full saves
+     */
+    public K2530341_LibraryService(String dataDir, K2530341_SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+        bookCSV = new K2530341_BookCSVManager(dataDir);
+        userCSV = new K2530341_UserCSVManager(dataDir);
+        borrowCSV = new K2530341_BorrowCSVManager(dataDir);
+        reservationCSV = new K2530341_ReservationCSVManager(dataDir);
+        notificationCSV = new K2530341_NotificationCSVManager(dataDir);
+        binarySnapshot = new K2530341_BinarySnapshotManager(dataDir);
+        journal = new K2530341_JournalManager(dataDir);
+        idAllocator = new K2530341_IdAllocator(new K2530341_IdSequenceManager(dataDir), K2530341_IdAllocator.DEFAULT_BLOCK_SIZE);
+        flusher = new K2530341_JournalFlusher(journal, persistenceStats, DEFAULT_FLUSH_WINDOW_MILLIS);
+        pipeline = new K2530341_CommandPipeline(this);
+    }
     
     // initialize method - called when app starts
     public void initialize() {
         loadAllData();
         cleanupExpiredReservations(); // check for any expired reservations
+        // the holds and loans still open get their next event on the timing wheel
+        reservationIndex.getNotified().forEach(this::scheduleExpiry);
+        borrows.values().stream().filter(b -> b.getReturnDate() == null).forEach(this::scheduleLoanEvents);
+        timers.start();
     }
     
     /**
-     * Load all data from CSV files.
+     * Load all data from the snapshot, then replay the journal on top.
+     * In BINARY mode the CSV files are only imported when there is no binary
+     * snapshot yet (first start after switching formats).
      */
     private void loadAllData() {
-        // Load books
-        List<K2530341_Book> loadedBooks = bookCSV.loadBooks();
-        for (K2530341_Book book : loadedBooks) {
-            books.put(book.getBookId(), book);
-            // Update book ID counter
-            if (book.getBookId().startsWith("BK-")) {
-                try {
-                    int id = Integer.parseInt(book.getBookId().substring(3));
-                    if (id >= bookIdCounter) {
-                        bookIdCounter = id + 1;
-                    }
-                } catch (NumberFormatException ignored) {}
-            }
+        if (snapshotFormat == K2530341_SnapshotFormat.BINARY && binarySnapshot.exists()) {
+            loadBinarySnapshot();
+        } else {
+            loadCsvSnapshots();
         }
         
-        // Load users
-        List<K2530341_User> loadedUsers = userCSV.loadUsers();
-        for (K2530341_User user : loadedUsers) {
-            users.put(user.getUserId(), user);
-            // Update user ID counters based on type
-            String userId = user.getUserId();
-            try {
-                if (userId.startsWith("STU-")) {
-                    int id = Integer.parseInt(userId.substring(4));
-                    if (id >= studentIdCounter) {
-                        studentIdCounter = id + 1;
-                    }
-                } else if (userId.startsWith("FCL-")) {
-                    int id = Integer.parseInt(userId.substring(4));
-                    if (id >= facultyIdCounter) {
-                        facultyIdCounter = id + 1;
-                    }
-                } else if (userId.startsWith("GST-")) {
-                    int id = Integer.parseInt(userId.substring(4));
-                    if (id >= guestIdCounter) {
-                        guestIdCounter = id + 1;
-                    }
+        // Changes made after the last compaction are only in the journal
+        journal.replay(this::applyJournalRecord);
+        
+        reservationIndex.rebuild(reservations.values());
+        borrowIndex.rebuild(borrows.values());
+        searchIndex.rebuild(books.values());
+        trigramIndex.rebuild(books.values());
+        fuzzyIndex.rebuild(books.values());
+        facetIndex.rebuild(books.values());
+        userIndex.rebuild(users.values(), borrowIndex::hasOpenBorrows);
+        rebuildAutocomplete();
+        
+        // Resume the ID sequences from their stored high-water marks; only
+        // data written before the marks existed has its IDs scanned (once)
+        if (!idAllocator.load()) {
+            books.keySet().forEach(idAllocator::seed);
+            users.keySet().forEach(idAllocator::seed);
+            borrows.keySet().forEach(idAllocator::seed);
+            reservations.keySet().forEach(idAllocator::seed);
+            notifications.keySet().forEach(idAllocator::seed);
+            idAllocator.checkpoint();
+        }
+        
+        Map<K2530341_DataTable, Collection<String>> all = new EnumMap<>(K2530341_DataTable.class);
+        all.put(K2530341_DataTable.BOOKS, books.keySet());
+        all.put(K2530341_DataTable.USERS, users.keySet());
+        all.put(K2530341_DataTable.BORROWS, borrows.keySet());
+        readSnapshot = K2530341_LibrarySnapshot.EMPTY;
+        publishSnapshot(all);
+    }
+    
+    private void loadBinarySnapshot() {
+        K2530341_BinarySnapshotManager.Snapshot snapshot = binarySnapshot.load(persistenceStats);
+        snapshot.books.forEach(book -> books.put(book.getBookId(), book));
+        snapshot.users.forEach(user -> users.put(user.getUserId(), user));
+        snapshot.borrows.forEach(borrow -> borrows.put(borrow.getBorrowId(), borrow));
+        snapshot.reservations.forEach(reservation -> reservations.put(reservation.getReservationId(), reservation));
+        snapshot.notifications.forEach(notification -> notifications.put(notification.getNotificationId(), notification));
+    }
+    
+    /**
+     * Load the five CSV files. They are independent, so each one is streamed
+     * straight into its own map on a pool thread; join() makes the maps visible
+     * to the calling thread afterwards.
+     */
+    private void loadCsvSnapshots() {
+        CompletableFuture.allOf(
+            this.<K2530341_Book>loadTable(K2530341_DataTable.BOOKS, bookCSV::loadBooks,
+                book -> books.put(book.getBookId(), book)),
+            this.<K2530341_User>loadTable(K2530341_DataTable.USERS, userCSV::loadUsers,
+                user -> users.put(user.getUserId(), user)),
+            this.<K2530341_Borrow>loadTable(K2530341_DataTable.BORROWS, borrowCSV::loadBorrows,
+                borrow -> borrows.put(borrow.getBorrowId(), borrow)),
+            this.<K2530341_Reservation>loadTable(K2530341_DataTable.RESERVATIONS, reservationCSV::loadReservations,
+                reservation -> reservations.put(reservation.getReservationId(), reservation)),
+            this.<K2530341_Notification>loadTable(K2530341_DataTable.NOTIFICATIONS, notificationCSV::loadNotifications,
+                notification -> notifications.put(notification.getNotificationId(), notification))
+        ).join();
+    }
+    
+    // stream one CSV table into its map on a pool thread and record how long it took
+    private <T> CompletableFuture<Void> loadTable(K2530341_DataTable table, Consumer<Consumer<T>> loader, Consumer<T> sink) {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            int[] rows = {0};
+            loader.accept(entity -> {
+                sink.accept(entity);
+                rows[0]++;
+            });
+            persistenceStats.recordLoad(table, rows[0], (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+    
+    private void applyJournalRecord(String operation, K2530341_DataTable table, String[] fields) {
+        tablesSinceCompaction.add(table);
+        boolean delete = K2530341_JournalManager.OP_DELETE.equals(operation);
+        switch (table) {
+            case BOOKS:
+                if (delete) {
+                    books.remove(fields[0]);
+                } else {
+                    K2530341_Book book = bookCSV.fromRow(fields);
+                    if (book != null) books.put(book.getBookId(), book);
+                }
+                break;
+            case USERS:
+                if (delete) {
+                    users.remove(fields[0]);
+                } else {
+                    K2530341_User user = userCSV.fromRow(fields);
+                    if (user != null) users.put(user.getUserId(), user);
+                }
+                break;
+            case BORROWS:
+                if (delete) {
+                    borrows.remove(fields[0]);
+                } else {
+                    K2530341_Borrow borrow = borrowCSV.fromRow(fields);
+                    if (borrow != null) borrows.put(borrow.getBorrowId(), borrow);
+                }
+                break;
+            case RESERVATIONS:
+                if (delete) {
+                    reservations.remove(fields[0]);
+                } else {
+                    K2530341_Reservation reservation = reservationCSV.fromRow(fields);
+                    if (reservation != null) reservations.put(reservation.getReservationId(), reservation);
                 }
-            } catch (NumberFormatException ignored) {}
+                break;
+            case NOTIFICATIONS:
+                if (delete) {
+                    notifications.remove(fields[0]);
+                } else {
+                    K2530341_Notification notification = notificationCSV.fromRow(fields);
+                    if (notification != null) notifications.put(notification.getNotificationId(), notification);
+                }
+                break;
         }
+    }
+    
+    /**
+     * Save all data as a full snapshot (binary or CSV, see {@link K2530341_SnapshotFormat}).
+     * Used when entities were changed outside the service (e.g. paying fines) and on exit.
+     * Writes full snapshots of every table and empties the journal.
+     */
+    public void saveAllData() {
+        synchronized (persistLock) {
+            flusher.flush();
+            awaitCompaction();
+            publishSnapshot(dirtyIds);
+            dirtyIds.clear();
+            EnumSet<K2530341_DataTable> tables = EnumSet.allOf(K2530341_DataTable.class);
+            // the journal segment is only dropped once every table is on disk - else replay still covers it
+            boolean saved = true;
+            if (snapshotFormat == K2530341_SnapshotFormat.BINARY) {
+                byte[] snapshot = encodeBinarySnapshot();
+                long rowCount = entityCount();
+                journal.beginCompaction();
+                saved = writeBinarySnapshot(snapshot, rowCount);
+            } else {
+                Map<K2530341_DataTable, List<String[]>> rows = snapshotRows(tables);
+                journal.beginCompaction();
+                saved = writeSnapshots(tables, rows);
+            }
+            if (saved) {
+                journal.finishCompaction();
+                tablesSinceCompaction.clear();
+            }
+            idAllocator.checkpoint();
         }
-        
-        // Load borrows
-        List<K2530341_Borrow> loadedBorrows = borrowCSV.loadBorrows();{
-        for (K2530341_Borrow borrow : loadedBorrows) {
-            borrows.put(borrow.getBorrowId(), borrow);
-            int id = Integer.parseInt(borrow.getBorrowId().replaceAll("\\D", ""));
-            borrowIdCounter = Math.max(borrowIdCounter, id + 1);
+    }
+    
+    /**
+     * Export every table to the CSV files, whatever the snapshot format.
+     * In BINARY mode the CSV files are not kept up to date otherwise; the
+     * librarian exports them from the Reports tab.
+     * @return true if every file was saved
+     */
+    public boolean exportCsv() {
+        synchronized (persistLock) {
+            flusher.flush();
+            EnumSet<K2530341_DataTable> tables = EnumSet.allOf(K2530341_DataTable.class);
+            Map<K2530341_DataTable, List<String[]>> rows = snapshotRows(tables);
+            // a saved file always has at least its header, so 0 bytes means the save failed
+            return bookCSV.saveRows(rows.get(K2530341_DataTable.BOOKS)) > 0
+                & userCSV.saveRows(rows.get(K2530341_DataTable.USERS)) > 0
+                & borrowCSV.saveRows(rows.get(K2530341_DataTable.BORROWS)) > 0
+                & reservationCSV.saveRows(rows.get(K2530341_DataTable.RESERVATIONS)) > 0
+                & notificationCSV.saveRows(rows.get(K2530341_DataTable.NOTIFICATIONS)) > 0;
         }
-        
-        // Load reservations
-        List<K2530341_Reservation> loadedReservations = reservationCSV.loadReservations();
-        for (K2530341_Reservation reservation : loadedReservations) {
-            reservations.put(reservation.getReservationId(), reservation);
-            int id = Integer.parseInt(reservation.getReservationId().replaceAll("\\D", ""));
-            reservationIdCounter = Math.max(reservationIdCounter, id + 1);
+    }
+    
+    /**
+     * Save the entities that changed since the last save.
+     * Each change is serialized here and handed to the flusher thread, which
+     * appends the records of a whole burst of saves to the journal in one write.
+     * Once the journal grows past the compaction threshold it is folded into
+     * the CSV snapshots in the background.
+     * Use {@link #flush()} or {@link #awaitDurable()} when the data must be on disk.
+     */
+    public void persistChanges() {
+        if (batching.get()) {
+            return; // the batch persists once at its end
+        }
+        synchronized (persistLock) {
+            if (dirtyIds.isEmpty()) {
+                return;
+            }
+            
+            Map<K2530341_DataTable, Map<String, String[]>> rows = rowsOf(dirtyIds);
+            List<String[]> records = new ArrayList<>();
+            for (Map.Entry<K2530341_DataTable, Map<String, String[]>> entry : rows.entrySet()) {
+                K2530341_DataTable table = entry.getKey();
+                entry.getValue().forEach((id, row) -> records.add(row != null
+                    ? K2530341_JournalManager.upsert(table, row)
+                    : K2530341_JournalManager.delete(table, id)));
+            }
+            publishSnapshot(dirtyIds);
+            
+            flusher.submit(dirtyIds.keySet(), records);
+            tablesSinceCompaction.addAll(dirtyIds.keySet());
+            dirtyIds.clear();
+            
+            if (journal.getRecordCount() >= compactionThreshold) {
+                startCompaction();
+            }
+        }
+    }
+    
+    /**
+     * Apply a batch of mutations with one persist at the end instead of one
+     * per mutation (used by the command pipeline's writer thread and the bulk
+     * borrow/return calls). A batch run inside another persists with the outer one.
+     * @param batch Mutations to apply
+     */
+    void runBatch(Runnable batch) {
+        boolean outermost = !batching.get();
+        batching.set(true);
+        try {
+            batch.run();
+        } finally {
+            if (outermost) {
+                batching.set(false);
+                persistChanges();
+            }
+        }
+    }
+    
+    /**
+     * Write the pending journal records now and wait until they are on disk.
+     */
+    public void flush() {
+        flusher.flush();
+    }
+    
+    /**
+     * Wait until every change saved so far is on disk.
+     * Unlike {@link #flush()} this does not cut the current flush window short.
+     */
+    public void awaitDurable() {
+        flusher.awaitDurable();
+    }
+    
+    /**
+     * Set how long the flusher waits for more saves before writing the journal.
+     * @param millis Flush window in milliseconds, 0 to write each save right away
+     */
+    public void setFlushWindow(long millis) {
+        flusher.setWindowMillis(millis);
+    }
+    
+    /**
+     * Fold the journal into the CSV snapshots now and wait until it is done.
+     */
+    public void compactJournal() {
+        synchronized (persistLock) {
+            flusher.flush();
+            awaitCompaction();
+            startCompaction();
+            awaitCompaction();
+        }
+    }
+    
+    // rotate the journal and hand the snapshot rows to the compactor thread
+    private void startCompaction() {
+        if (compaction != null && !compaction.isDone()) {
+            return; // still folding the previous segment - it will pick these up next time
+        }
+        synchronized (failedCompactionTables) {
+            // a failed compaction left its segment in place - write those tables again
+            tablesSinceCompaction.addAll(failedCompactionTables);
+            failedCompactionTables.clear();
+        }
+        if (tablesSinceCompaction.isEmpty()) {
+            return;
         }
+        EnumSet<K2530341_DataTable> tables = EnumSet.copyOf(tablesSinceCompaction);
+        tablesSinceCompaction.clear();
         
-        // Load notifications
-        List<K2530341_Notification> loadedNotifications = notificationCSV.loadNotifications();
-        for (K2530341_Notification notification : loadedNotifications) {
-            notifications.put(notification.getNotificationId(), notification);
-            int id = Integer.parseInt(notification.getNotificationId().replaceAll("\\D", ""));
-            notificationIdCounter = Math.max(notificationIdCounter, id + 1);
+        // Snapshots are encoded here so the compactor never reads the live (mutable) entities
+        if (snapshotFormat == K2530341_SnapshotFormat.BINARY) {
+            byte[] snapshot = encodeBinarySnapshot();
+            long rowCount = entityCount();
+            journal.beginCompaction();
+            compaction = compactor.submit(() -> finishCompaction(tables, writeBinarySnapshot(snapshot, rowCount)));
+        } else {
+            Map<K2530341_DataTable, List<String[]>> rows = snapshotRows(tables);
+            journal.beginCompaction();
+            compaction = compactor.submit(() -> finishCompaction(tables, writeSnapshots(tables, rows)));
+        }
+    }
+    
+    // drop the folded journal segment, or keep it (replay still covers it) and retry the tables next time
+    private void finishCompaction(Set<K2530341_DataTable> tables, boolean saved) {
+        if (saved) {
+            journal.finishCompaction();
+            return;
+        }
+        System.err.println("Error compacting journal: snapshot not saved, keeping the journal segment");
+        synchronized (failedCompactionTables) {
+            failedCompactionTables.addAll(tables);
+        }
+    }
+    
+    private byte[] encodeBinarySnapshot() {
+        return binarySnapshot.encode(books.values(), users.values(), borrows.values(),
+            reservations.values(), notifications.values());
+    }
+    
+    private long entityCount() {
+        return (long) books.size() + users.size() + borrows.size() + reservations.size() + notifications.size();
+    }
+    
+    // write the binary snapshot; false if it failed to save
+    private boolean writeBinarySnapshot(byte[] snapshot, long rowCount) {
+        long bytes = binarySnapshot.write(snapshot);
+        if (bytes == 0) {
+            return false;
+        }
+        persistenceStats.recordCompaction(EnumSet.allOf(K2530341_DataTable.class), rowCount, bytes);
+        return true;
+    }
+    
+    private void awaitCompaction() {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (Exception e) {
+            System.err.println("Error compacting journal: " + e.getMessage());
+        }
+    }
+    
+    private Map<K2530341_DataTable, List<String[]>> snapshotRows(Set<K2530341_DataTable> tables) {
+        Map<K2530341_DataTable, List<String[]>> rows = new EnumMap<>(K2530341_DataTable.class);
+        for (K2530341_DataTable table : tables) {
+            List<String[]> tableRows = new ArrayList<>();
+            switch (table) {
+                case BOOKS:
+                    books.values().forEach(book -> tableRows.add(bookCSV.toRow(book)));
+                    break;
+                case USERS:
+                    users.values().forEach(user -> tableRows.add(userCSV.toRow(user)));
+                    break;
+                case BORROWS:
+                    borrows.values().forEach(borrow -> tableRows.add(borrowCSV.toRow(borrow)));
+                    break;
+                case RESERVATIONS:
+                    reservations.values().forEach(reservation -> tableRows.add(reservationCSV.toRow(reservation)));
+                    break;
+                case NOTIFICATIONS:
+                    notifications.values().forEach(notification -> tableRows.add(notificationCSV.toRow(notification)));
+                    break;
+            }
+            rows.put(table, tableRows);
         }
+        return rows;
+    }
+    
+    // write the CSV snapshots; false if any table failed to save
+    private boolean writeSnapshots(Set<K2530341_DataTable> tables, Map<K2530341_DataTable, List<String[]>> rows) {
+        long rowCount = 0;
+        long bytes = 0;
+        boolean saved = true;
+        for (K2530341_DataTable table : tables) {
+            List<String[]> tableRows = rows.get(table);
+            rowCount += tableRows.size();
+            long written = 0;
+            switch (table) {
+                case BOOKS:
+                    written = bookCSV.saveRows(tableRows);
+                    break;
+                case USERS:
+                    written = userCSV.saveRows(tableRows);
+                    break;
+                case BORROWS:
+                    written = borrowCSV.saveRows(tableRows);
+                    break;
+                case RESERVATIONS:
+                    written = reservationCSV.saveRows(tableRows);
+                    break;
+                case NOTIFICATIONS:
+                    written = notificationCSV.saveRows(tableRows);
+                    break;
+            }
+            // a saved file always has at least its header, so 0 bytes means the save failed
+            saved &= written > 0;
+            bytes += written;
+        }
+        if (saved) {
+            persistenceStats.recordCompaction(tables, rowCount, bytes);
+        }
+        return saved;
+    }
+    
+    // current CSV row of an entity, or null if it was deleted
+    private String[] toRow(K2530341_DataTable table, String id) {
+        switch (table) {
+            case BOOKS:
+                K2530341_Book book = books.get(id);
+                return book != null ? bookCSV.toRow(book) : null;
+            case USERS:
+                K2530341_User user = users.get(id);
+                return user != null ? userCSV.toRow(user) : null;
+            case BORROWS:
+                K2530341_Borrow borrow = borrows.get(id);
+                return borrow != null ? borrowCSV.toRow(borrow) : null;
+            case RESERVATIONS:
+                K2530341_Reservation reservation = reservations.get(id);
+                return reservation != null ? reservationCSV.toRow(reservation) : null;
+            case NOTIFICATIONS:
+                K2530341_Notification notification = notifications.get(id);
+                return notification != null ? notificationCSV.toRow(notification) : null;
+            default:
+                return null;
+        }
+    }
+    
+    // current row per ID (null once deleted), in the order given
+    private Map<K2530341_DataTable, Map<String, String[]>> rowsOf(Map<K2530341_DataTable, ? extends Collection<String>> ids) {
+        Map<K2530341_DataTable, Map<String, String[]>> rows = new EnumMap<>(K2530341_DataTable.class);
+        ids.forEach((table, tableIds) -> {
+            Map<String, String[]> tableRows = new LinkedHashMap<>();
+            for (String id : tableIds) {
+                tableRows.put(id, toRow(table, id));
+            }
+            rows.put(table, tableRows);
+        });
+        return rows;
+    }
+    
+    // copy the changed books/users/borrows (null once deleted) into the next read snapshot
+    private void publishSnapshot(Map<K2530341_DataTable, ? extends Collection<String>> ids) {
+        Map<String, K2530341_Book> changedBooks = copies(ids.get(K2530341_DataTable.BOOKS), books, K2530341_Book::copy);
+        Map<String, K2530341_User> changedUsers = copies(ids.get(K2530341_DataTable.USERS), users, K2530341_User::copy);
+        Map<String, K2530341_Borrow> changedBorrows = copies(ids.get(K2530341_DataTable.BORROWS), borrows, K2530341_Borrow::copy);
+        if (!changedBooks.isEmpty() || !changedUsers.isEmpty() || !changedBorrows.isEmpty()) {
+            readSnapshot = readSnapshot.with(changedBooks, changedUsers, changedBorrows);
+        }
+    }
+    
+    private static <T> Map<String, T> copies(Collection<String> ids, Map<String, T> live, Function<T, T> copy) {
+        Map<String, T> result = new HashMap<>();
+        if (ids != null) {
+            for (String id : ids) {
+                T entity = live.get(id);
+                result.put(id, entity == null ? null : copy.apply(entity));
+            }
+        }
+        return result;
     }
     
     /**
-     * Save all data to CSV files.
+     * Get the latest published read snapshot. Holding on to it pins that
+     * version: it keeps showing the same state while changes go on.
+     * @return Current snapshot of the books, users and borrows
      */
-    public void saveAllData() {
-        bookCSV.saveBooks(new ArrayList<>(books.values()));
-        userCSV.saveUsers(new ArrayList<>(users.values()));
-        borrowCSV.saveBorrows(new ArrayList<>(borrows.values()));
-        reservationCSV.saveReservations(new ArrayList<>(reservations.values()));
-        notificationCSV.saveNotifications(new ArrayList<>(notifications.values()));
+    public K2530341_LibrarySnapshot getSnapshot() {
+        return readSnapshot;
+    }
+    
+    private void markDirty(K2530341_DataTable table, String id) {
+        synchronized (persistLock) {
+            dirtyIds.computeIfAbsent(table, t -> new LinkedHashSet<>()).add(id);
+        }
+    }
+    
+    private void markDirty(K2530341_DataTable table, Collection<String> ids) {
+        synchronized (persistLock) {
+            dirtyIds.computeIfAbsent(table, t -> new LinkedHashSet<>()).addAll(ids);
+        }
+    }
+    
+    /**
+     * Set how many journal records may accumulate before they are compacted.
+     * @param compactionThreshold Record count that triggers a compaction
+     */
+    public void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+    
+    /**
+     * Get the number of records in the journal waiting to be compacted.
+     * @return Journal record count
+     */
+    public long getJournalRecordCount() {
+        return journal.getRecordCount();
+    }
+    
+    /**
+     * Stop the background threads after writing any pending journal records
+     * and finishing any compaction in progress.
+     */
+    public void shutdown() {
+        timers.stop();
+        pipeline.close();
+        flusher.close();
+        journal.close();
+        awaitCompaction();
+        compactor.shutdown();
+        autocompleteBuilder.shutdown();
+        idAllocator.checkpoint();
+    }
+    
+    /**
+     * Get the write counters (rows/bytes per flush and totals) for monitoring.
+     * @return Persistence statistics
+     */
+    public K2530341_PersistenceStats getPersistenceStats() {
+        return persistenceStats;
+    }
+    
+    /**
+     * Get the tables with changes waiting to be written on the next flush.
+     * @return Copy of the dirty table set
+     */
+    public Set<K2530341_DataTable> getDirtyTables() {
+        synchronized (persistLock) {
+            return dirtyIds.isEmpty() ? EnumSet.noneOf(K2530341_DataTable.class) : EnumSet.copyOf(dirtyIds.keySet());
+        }
     }
     
     // ========== BOOK MANAGEMENT ==========
     
     public String addBook(K2530341_Book book) {
-        if (books.containsKey(book.getBookId())) {
-            return "DUPLICATE_ID";
-        }
-        books.put(book.getBookId(), book);
-        // Increment the counter only when book is actually added
-        if (book.getBookId().startsWith("BK-")) {
-            try {
-                int id = Integer.parseInt(book.getBookId().substring(3));
-                if (id >= bookIdCounter) {
-                    bookIdCounter = id + 1;
-                }
-            } catch (NumberFormatException ignored) {}
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(book.getBookId()))) {
+            if (books.containsKey(book.getBookId())) {
+                return "DUPLICATE_ID";
+            }
+            books.put(book.getBookId(), book);
+            searchIndex.index(book);
+            trigramIndex.index(book);
+            fuzzyIndex.index(book);
+            facetIndex.index(book);
+            rebuildAutocomplete();
+            // Move the sequence past the ID only when the book is actually added
+            idAllocator.observe(book.getBookId());
+            markDirty(K2530341_DataTable.BOOKS, book.getBookId());
+            persistChanges();
+            return "SUCCESS";
         }
-        saveAllData();
-        return "SUCCESS";
     }
     
     public String peekNextBookId() {
-        return "BK-" + String.format("%03d", bookIdCounter);
+        return idAllocator.peek(K2530341_IdGenerator.BOOK_PREFIX);
     }
     
     public String generateNextBookId() {
-        return "BK-" + String.format("%03d", bookIdCounter++);
+        return idAllocator.next(K2530341_IdGenerator.BOOK_PREFIX);
     }
     
     public void updateBook(K2530341_Book book) {
-        books.put(book.getBookId(), book);
-        saveAllData();
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(book.getBookId()))) {
+            books.put(book.getBookId(), book);
+            searchIndex.index(book);
+            trigramIndex.index(book);
+            fuzzyIndex.index(book);
+            facetIndex.index(book);
+            rebuildAutocomplete();
+            markDirty(K2530341_DataTable.BOOKS, book.getBookId());
+            persistChanges();
+        }
     }
     
     public void deleteBook(String bookId) {
-        books.remove(bookId);
-        saveAllData();
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(bookId))) {
+            books.remove(bookId);
+            searchIndex.remove(bookId);
+            trigramIndex.remove(bookId);
+            fuzzyIndex.remove(bookId);
+            facetIndex.remove(bookId);
+            rebuildAutocomplete();
+            markDirty(K2530341_DataTable.BOOKS, bookId);
+            persistChanges();
+        }
     }
     
     public K2530341_Book getBook(String bookId) {
@@ -179,80 +772,236 @@ public class K2530341_LibraryService {
         return new ArrayList<>(books.values());
     }
     
+    /**
+     * Get one page of books, ordered by book ID.
+     * @param cursor Next cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of books on the page
+     * @return Page of books with the cursor for the next one
+     */
+    public K2530341_Page<K2530341_Book> getBooksPage(String cursor, int pageSize) {
+        // read-only copies from the current snapshot, in live ID order
+        return page(books, cursor, pageSize, readSnapshot::getBook);
+    }
+    
+    /**
+     * Substring search over title, author and category (case-insensitive).
+     * Answered from the trigram index: only books holding every trigram of
+     * the query are checked.
+     * @param query Text to look for
+     * @return Books whose title, author or category contains the query
+     */
     public List<K2530341_Book> searchBooks(String query) {
-        String lowerQuery = query.toLowerCase();
-        return books.values().stream()
-            .filter(book -> book.getTitle().toLowerCase().contains(lowerQuery) ||
-                           book.getAuthor().toLowerCase().contains(lowerQuery) ||
-                           book.getCategory().toLowerCase().contains(lowerQuery))
-            .collect(Collectors.toList());
+        return trigramIndex.searchSubstring(query);
     }
     
-    // ========== USER MANAGEMENT ==========
+    /**
+     * Typo-tolerant search over title, author and category.
+     * A book matches when it contains at least the given share of the
+     * query's trigrams, so "Silberchatz" still finds "Silberschatz".
+     * @param query Text to look for (may be misspelled)
+     * @param minSimilarity Share of query trigrams that must match, 0-1 (e.g. 0.6)
+     * @return Matching books, most similar first
+     */
+    public List<K2530341_Book> searchBooks(String query, double minSimilarity) {
+        return trigramIndex.searchSimilar(query, minSimilarity);
+    }
     
-    public String addUser(K2530341_User user) {
-        if (users.containsKey(user.getUserId())) {
-            return "DUPLICATE_ID";
+    /**
+     * Find the books matching a combined status/category/tag filter,
+     * answered by intersecting the facet bitmaps.
+     * @param filter Book filter, e.g. available Programming books tagged beginner
+     * @return Matching books
+     */
+    public List<K2530341_Book> findBooks(K2530341_BookFilter filter) {
+        return facetIndex.find(filter);
+    }
+    
+    /**
+     * Count the books matching a filter without building the list.
+     * @param filter Book filter
+     * @return Number of matching books
+     */
+    public int countBooks(K2530341_BookFilter filter) {
+        return facetIndex.select(filter).cardinality();
+    }
+    
+    /**
+     * Search the catalog and narrow the hits by category, status and tag.
+     * The text query works like the search pane: ranked word search first,
+     * falling back to substring matching; a blank query means every book.
+     * @param query Text query, or null/blank for the whole catalog
+     * @param category Category to keep, or null for any
+     * @param status Availability status to keep, or null for any
+     * @param tag Tag to keep, or null for any
+     * @return Matching books with the count of books for each facet value
+     */
+    public K2530341_FacetResult searchBooksFaceted(String query, String category,
+                                                   K2530341_AvailabilityStatus status, String tag) {
+        List<K2530341_Book> candidates = null;
+        if (query != null && !query.isBlank()) {
+            candidates = searchBooksRanked(query);
+            if (candidates.isEmpty()) {
+                candidates = searchBooks(query.trim());
+            }
         }
-        users.put(user.getUserId(), user);
-        // Increment the counter only when user is actually added
-        String userId = user.getUserId();
+        return facetIndex.search(candidates, category, status, tag);
+    }
+    
+    /**
+     * Typo-tolerant word search over titles and authors.
+     * Every query word must be within maxDistance edits of a word in the
+     * book's title or author, e.g. "silberchatz" finds "Silberschatz".
+     * @param query Free-text query
+     * @param maxDistance Maximum edit distance per word (1-2 is typical)
+     * @return Matching books, closest match first
+     */
+    public List<K2530341_Book> searchBooksFuzzy(String query, int maxDistance) {
+        List<K2530341_Book> results = new ArrayList<>();
+        for (String bookId : fuzzyIndex.search(query, maxDistance)) {
+            K2530341_Book book = books.get(bookId);
+            if (book != null) {
+                results.add(book);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Get the autocomplete index. Borrow counts are always current; after
+     * books are added, edited or removed it is the previous build until the
+     * background rebuild finishes. It may be queried from any thread.
+     * @return Autocomplete index over titles, authors and categories
+     */
+    public K2530341_BookAutocomplete getAutocomplete() {
+        return autocomplete;
+    }
+    
+    // queue one background rebuild - changes made while it runs queue the next one
+    private void rebuildAutocomplete() {
+        if (!autocompleteStale.compareAndSet(false, true)) {
+            return;
+        }
+        autocompleteBuilder.execute(() -> {
+            autocompleteStale.set(false);
+            K2530341_BookAutocomplete built = K2530341_BookAutocomplete.build(books.values());
+            synchronized (autocompleteLock) {
+                built.refreshPopularity(books.values());
+                autocomplete = built;
+            }
+        });
+    }
+    
+    /**
+     * Wait until every queued autocomplete rebuild has been published.
+     */
+    void awaitAutocomplete() {
         try {
-            if (userId.startsWith("STU-")) {
-                int id = Integer.parseInt(userId.substring(4));
-                if (id >= studentIdCounter) {
-                    studentIdCounter = id + 1;
-                }
-            } else if (userId.startsWith("FCL-")) {
-                int id = Integer.parseInt(userId.substring(4));
-                if (id >= facultyIdCounter) {
-                    facultyIdCounter = id + 1;
-                }
-            } else if (userId.startsWith("GST-")) {
-                int id = Integer.parseInt(userId.substring(4));
-                if (id >= guestIdCounter) {
-                    guestIdCounter = id + 1;
-                }
+            autocompleteBuilder.submit(() -> { }).get();
+        } catch (Exception e) {
+            System.err.println("Error rebuilding autocomplete: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Suggest titles, authors and categories with a word starting with the prefix.
+     * @param prefix Text typed so far
+     * @param limit Maximum number of suggestions
+     * @return Suggestions, most borrowed first
+     */
+    public List<String> autocomplete(String prefix, int limit) {
+        return getAutocomplete().complete(prefix, limit);
+    }
+    
+    /**
+     * Full-text search over title, author, category, ISBN and tags.
+     * Every query term must match (as a word prefix); results are ranked by
+     * relevance, with title and author hits weighted highest.
+     * @param query Free-text query, e.g. "java prog"
+     * @return Matching books, best match first
+     */
+    public List<K2530341_Book> searchBooksRanked(String query) {
+        List<K2530341_Book> results = new ArrayList<>();
+        for (String bookId : searchIndex.search(query)) {
+            K2530341_Book book = books.get(bookId);
+            if (book != null) {
+                results.add(book);
             }
-        } catch (NumberFormatException ignored) {}
-        saveAllData();
-        return "SUCCESS";
+        }
+        return results;
     }
     
-    public String peekNextUserId(K2530341_MembershipType type) {
-        switch (type) {
-            case STUDENT:
-                return "STU-" + String.format("%03d", studentIdCounter);
-            case FACULTY:
-                return "FCL-" + String.format("%03d", facultyIdCounter);
-            case GUEST:
-                return "GST-" + String.format("%03d", guestIdCounter);
-            default:
-                return "STU-" + String.format("%03d", studentIdCounter);
+    // ========== USER MANAGEMENT ==========
+    
+    public String addUser(K2530341_User user) {
+        try (K2530341_LockStripes.Guard guard = locks.lock(userKey(user.getUserId()))) {
+            if (users.containsKey(user.getUserId())) {
+                return "DUPLICATE_ID";
+            }
+            users.put(user.getUserId(), user);
+            userIndex.index(user, borrowIndex.hasOpenBorrows(user.getUserId()));
+            // Move the sequence past the ID only when the user is actually added
+            idAllocator.observe(user.getUserId());
+            markDirty(K2530341_DataTable.USERS, user.getUserId());
+            persistChanges();
+            return "SUCCESS";
         }
     }
     
+    public String peekNextUserId(K2530341_MembershipType type) {
+        return idAllocator.peek(userIdPrefix(type));
+    }
+    
     public String generateNextUserId(K2530341_MembershipType type) {
+        return idAllocator.next(userIdPrefix(type));
+    }
+    
+    private static String userIdPrefix(K2530341_MembershipType type) {
         switch (type) {
-            case STUDENT:
-                return "STU-" + String.format("%03d", studentIdCounter++);
             case FACULTY:
-                return "FCL-" + String.format("%03d", facultyIdCounter++);
+                return K2530341_IdGenerator.FACULTY_PREFIX;
             case GUEST:
-                return "GST-" + String.format("%03d", guestIdCounter++);
+                return K2530341_IdGenerator.GUEST_PREFIX;
+            case STUDENT:
             default:
-                return "STU-" + String.format("%03d", studentIdCounter++);
+                return K2530341_IdGenerator.STUDENT_PREFIX;
         }
     }
     
     public void updateUser(K2530341_User user) {
-        users.put(user.getUserId(), user);
-        saveAllData();
+        try (K2530341_LockStripes.Guard guard = locks.lock(userKey(user.getUserId()))) {
+            users.put(user.getUserId(), user);
+            userIndex.index(user, borrowIndex.hasOpenBorrows(user.getUserId()));
+            markDirty(K2530341_DataTable.USERS, user.getUserId());
+            persistChanges();
+        }
     }
     
     public void deleteUser(String userId) {
-        users.remove(userId);
-        saveAllData();
+        try (K2530341_LockStripes.Guard guard = locks.lock(userKey(userId))) {
+            users.remove(userId);
+            userIndex.remove(userId);
+            markDirty(K2530341_DataTable.USERS, userId);
+            persistChanges();
+        }
+    }
+    
+    /**
+     * Find the users matching a combined membership/active-borrow filter,
+     * answered by intersecting the user bitmaps.
+     * @param filter User filter, e.g. guests with active borrows
+     * @return Matching users
+     */
+    public List<K2530341_User> findUsers(K2530341_UserFilter filter) {
+        return userIndex.find(filter);
+    }
+    
+    /**
+     * Count the users matching a filter without building the list.
+     * @param filter User filter
+     * @return Number of matching users
+     */
+    public int countUsers(K2530341_UserFilter filter) {
+        return userIndex.select(filter).cardinality();
     }
     
     public K2530341_User getUser(String userId) {
@@ -263,16 +1012,87 @@ public class K2530341_LibraryService {
         return new ArrayList<>(users.values());
     }
     
+    /**
+     * Get one page of users, ordered by user ID.
+     * @param cursor Next cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of users on the page
+     * @return Page of users with the cursor for the next one
+     */
+    public K2530341_Page<K2530341_User> getUsersPage(String cursor, int pageSize) {
+        // read-only copies from the current snapshot, in live ID order
+        return page(users, cursor, pageSize, readSnapshot::getUser);
+    }
+    
     // ========== BORROW/RETURN OPERATIONS ==========
     
     public String borrowBook(String bookId, String userId) {
-        K2530341_Book book = books.get(bookId);
-        K2530341_User user = users.get(userId);
-        
-        if (book == null || user == null) {
-            return null;
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(bookId), userKey(userId))) {
+            K2530341_Book book = books.get(bookId);
+            K2530341_User user = users.get(userId);
+            
+            if (book == null || user == null) {
+                return null;
+            }
+            
+            String refusal = checkBorrower(user);
+            if (refusal != null) {
+                return refusal;
+            }
+            
+            String borrowId = checkOut(book, user);
+            persistChanges();
+            return borrowId;
+        }
+    }
+    
+    /**
+     * Borrow a stack of books for one user at once. The user is checked once,
+     * the books are checked out in list order until the borrow limit is
+     * reached, and everything is persisted together at the end.
+     * @param userId Borrowing user
+     * @param bookIds Books to borrow
+     * @return Result per book ID in list order: the borrow ID, "LIMIT_EXCEEDED",
+     *         "FINE_LIMIT_EXCEEDED", or null if the book could not be borrowed
+     */
+    public Map<String, String> borrowBooks(String userId, List<String> bookIds) {
+        Map<String, String> results = new LinkedHashMap<>();
+        String[] keys = new String[bookIds.size() + 1];
+        keys[0] = userKey(userId);
+        for (int i = 0; i < bookIds.size(); i++) {
+            keys[i + 1] = bookKey(bookIds.get(i));
         }
         
+        runBatch(() -> {
+            try (K2530341_LockStripes.Guard guard = locks.lock(keys)) {
+                K2530341_User user = users.get(userId);
+                String refusal = user == null ? null : checkBorrower(user);
+                int slots = user == null || refusal != null
+                    ? 0 : user.getMembershipType().getBorrowLimit() - user.getCurrentBorrowCount();
+                
+                for (String bookId : bookIds) {
+                    if (results.containsKey(bookId)) {
+                        continue; // listed twice - keep the first result
+                    }
+                    K2530341_Book book = books.get(bookId);
+                    if (user == null || refusal != null) {
+                        results.put(bookId, refusal);
+                    } else if (slots == 0) {
+                        results.put(bookId, "LIMIT_EXCEEDED");
+                    } else {
+                        String borrowId = book == null ? null : checkOut(book, user);
+                        if (borrowId != null) {
+                            slots--;
+                        }
+                        results.put(bookId, borrowId);
+                    }
+                }
+            }
+        });
+        return results;
+    }
+    
+    // the reason a user may not borrow anything right now, or null if they may
+    private String checkBorrower(K2530341_User user) {
         // Check borrow limit
         if (user.getCurrentBorrowCount() >= user.getMembershipType().getBorrowLimit()) {
             return "LIMIT_EXCEEDED";
@@ -282,6 +1102,12 @@ public class K2530341_LibraryService {
         if (user.getUnpaidFines() >= MAX_UNPAID_LIMIT) {
             return "FINE_LIMIT_EXCEEDED";
         }
+        return null;
+    }
+    
+    // lend one book to a checked user (caller holds both stripes and persists)
+    private String checkOut(K2530341_Book book, K2530341_User user) {
+        String bookId = book.getBookId();
         
         // Check if book is available OR reserved for this specific user
         K2530341_AvailabilityStatus status = book.getAvailabilityStatus();
@@ -291,36 +1117,32 @@ public class K2530341_LibraryService {
             canBorrow = true;
         } else if (status == K2530341_AvailabilityStatus.RESERVED) {
             // Check if this user has a notified reservation for this book
-            K2530341_Reservation userReservation = reservations.values().stream()
-                .filter(r -> r.getBookId().equals(bookId) 
-                        && r.getUserId().equals(userId)
-                        && r.getStatus() == K2530341_ReservationStatus.NOTIFIED)
-                .findFirst()
-                .orElse(null);
+            K2530341_Reservation userReservation = reservationIndex.findNotified(bookId, user.getUserId());
             
             if (userReservation != null) {
-                // Check if reservation is not expired (48 hours)
+                // Check the hold has not run out since the user was notified
                 if (userReservation.getNotifiedAt() != null) {
-                    LocalDateTime expiryTime = userReservation.getNotifiedAt().plusHours(48);
+                    LocalDateTime expiryTime = userReservation.getNotifiedAt().plus(holdDuration);
                     if (LocalDateTime.now().isBefore(expiryTime)) {
                         canBorrow = true;
                         // Mark reservation as fulfilled when user borrows the book
-                        userReservation.setStatus(K2530341_ReservationStatus.FULFILLED);
+                        setReservationStatus(userReservation, K2530341_ReservationStatus.FULFILLED);
+                        markDirty(K2530341_DataTable.RESERVATIONS, userReservation.getReservationId());
                     } else {
                         // Reservation expired, release the book
-                        userReservation.setStatus(K2530341_ReservationStatus.EXPIRED);
-                        book.setAvailabilityStatus(K2530341_AvailabilityStatus.AVAILABLE);
+                        setReservationStatus(userReservation, K2530341_ReservationStatus.EXPIRED);
+                        setBookStatus(book, K2530341_AvailabilityStatus.AVAILABLE);
                         
                         // Check for next reservation
                         K2530341_Reservation nextReservation = getNextPendingReservation(bookId);
                         if (nextReservation != null) {
-                            nextReservation.setStatus(K2530341_ReservationStatus.NOTIFIED);
-                            nextReservation.setNotifiedAt(LocalDateTime.now());
-                            book.setAvailabilityStatus(K2530341_AvailabilityStatus.RESERVED);
-                            createNotification(nextReservation.getUserId(), K2530341_NotificationType.RESERVATION_READY,
-                                "Your reserved book '" + book.getTitle() + "' is now available. Please collect within 48 hours.");
+                            holdFor(nextReservation, LocalDateTime.now());
+                            setBookStatus(book, K2530341_AvailabilityStatus.RESERVED);
+                            markDirty(K2530341_DataTable.RESERVATIONS, nextReservation.getReservationId());
+                            addNotifications(List.of(holdReadyNotice(nextReservation, book)));
                         }
-                        saveAllData();
+                        markDirty(K2530341_DataTable.RESERVATIONS, userReservation.getReservationId());
+                        markDirty(K2530341_DataTable.BOOKS, bookId);
                         return null; // Current user's reservation expired
                     }
                 }
@@ -332,114 +1154,216 @@ public class K2530341_LibraryService {
         }
         
         // Create borrow record with structured ID
-        String borrowId = "BR-" + String.format("%04d", borrowIdCounter++);
+        String borrowId = idAllocator.next(K2530341_IdGenerator.BORROW_PREFIX);
         LocalDate borrowDate = LocalDate.now();
         LocalDate dueDate = borrowDate.plusDays(user.getMembershipType().getBorrowDurationDays());
         
-        K2530341_Borrow borrow = new K2530341_Borrow(borrowId, bookId, userId, borrowDate, dueDate);
+        K2530341_Borrow borrow = new K2530341_Borrow(borrowId, bookId, user.getUserId(), borrowDate, dueDate);
         borrows.put(borrowId, borrow);
+        borrowIndex.add(borrow);
+        userIndex.setActiveBorrows(borrow.getUserId(), true);
         
         // Update book and user
-        book.setAvailabilityStatus(K2530341_AvailabilityStatus.BORROWED);
-        book.incrementBorrowHistory();
+        setBookStatus(book, K2530341_AvailabilityStatus.BORROWED);
+        synchronized (autocompleteLock) {
+            book.incrementBorrowHistory();
+            autocomplete.recordBorrow(bookId);
+        }
         book.performBorrow();
         user.incrementBorrowCount();
         
-        saveAllData();
+        markDirty(K2530341_DataTable.BORROWS, borrowId);
+        markDirty(K2530341_DataTable.BOOKS, bookId);
+        markDirty(K2530341_DataTable.USERS, user.getUserId());
+        scheduleLoanEvents(borrow);
         return borrowId;
     }
     
+    /**
+     * Return a stack of books at once, persisting everything together at the end.
+     * @param borrowIds Borrow records to close
+     * @return Result per borrow ID in list order, as {@link #returnBook}
+     */
+    public Map<String, Boolean> returnBooks(List<String> borrowIds) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        runBatch(() -> {
+            for (String borrowId : borrowIds) {
+                if (!results.containsKey(borrowId)) {
+                    results.put(borrowId, returnBook(borrowId));
+                }
+            }
+        });
+        return results;
+    }
+    
     public boolean returnBook(String borrowId) {
         K2530341_Borrow borrow = borrows.get(borrowId);
-        if (borrow == null || borrow.getReturnDate() != null) {
+        if (borrow == null) {
             return false;
         }
         
-        K2530341_Book book = books.get(borrow.getBookId());
-        K2530341_User user = users.get(borrow.getUserId());
-        
-        if (book == null || user == null) {
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(borrow.getBookId()), userKey(borrow.getUserId()))) {
+            if (borrow.getReturnDate() != null) {
+                return false; // returned by another thread meanwhile
+            }
+            
+            K2530341_Book book = books.get(borrow.getBookId());
+            K2530341_User user = users.get(borrow.getUserId());
+            
+            if (book == null || user == null) {
+                return false;
+            }
+            
+            // Set return date
+            LocalDate returnDate = LocalDate.now();
+            borrow.setReturnDate(returnDate);
+            borrowIndex.markReturned(borrow);
+            cancelTimer(loanTimers, borrowId);
+            userIndex.setActiveBorrows(borrow.getUserId(), borrowIndex.hasOpenBorrows(borrow.getUserId()));
+            
+            // notifications for this return, created together at the end
+            List<K2530341_NotificationRequest> notices = new ArrayList<>();
+            
+            // Calculate fine if overdue
+            long overdueDays = borrow.getOverdueDays();
+            if (overdueDays > 0) {
+                K2530341_FineStrategy fineStrategy = getFineStrategy(user.getMembershipType());
+                double fine = fineStrategy.calculateFine(overdueDays);
+                borrow.setFinePaid(fine);
+                user.addFine(fine);
+                
+                // Create notification
+                notices.add(fineNotice(borrow, book));
+            }
+            
+            // Update user
+            user.decrementBorrowCount();
+            
+            // Check for reservations
+            K2530341_Reservation nextReservation = getNextPendingReservation(book.getBookId());
+            if (nextReservation != null) {
+                // Notify reserver
+                holdFor(nextReservation, LocalDateTime.now());
+                setBookStatus(book, K2530341_AvailabilityStatus.RESERVED);
+                book.performReserve();
+                markDirty(K2530341_DataTable.RESERVATIONS, nextReservation.getReservationId());
+                
+                notices.add(holdReadyNotice(nextReservation, book));
+            } else {
+                // Book becomes available
+                setBookStatus(book, K2530341_AvailabilityStatus.AVAILABLE);
+                book.performReturn();
+            }
+            addNotifications(notices);
+            
+            markDirty(K2530341_DataTable.BORROWS, borrowId);
+            markDirty(K2530341_DataTable.BOOKS, book.getBookId());
+            markDirty(K2530341_DataTable.USERS, user.getUserId());
+            persistChanges();
+            return true;
+        }
+    }
+    
+    /**
+     * Undo returns as one batch: each returned borrow is opened again for the
+     * same user with its original borrow and due dates, and any fine the
+     * return charged is taken back along with its notice. Only copies still
+     * on the shelf are reopened - one handed to a reservation or lent out
+     * again stays put - and a return whose fine has been paid since is kept.
+     * @param borrowIds Returned borrow records
+     * @return Result per borrow ID in list order: true if the loan is open again
+     */
+    public Map<String, Boolean> reopenBorrows(List<String> borrowIds) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        runBatch(() -> {
+            for (String borrowId : borrowIds) {
+                if (!results.containsKey(borrowId)) {
+                    results.put(borrowId, reopenBorrow(borrowId));
+                }
+            }
+        });
+        return results;
+    }
+    
+    private boolean reopenBorrow(String borrowId) {
+        K2530341_Borrow borrow = borrows.get(borrowId);
+        if (borrow == null) {
             return false;
         }
         
-        // Set return date
-        LocalDate returnDate = LocalDate.now();
-        borrow.setReturnDate(returnDate);
-        
-        // Calculate fine if overdue
-        long overdueDays = borrow.getOverdueDays();
-        if (overdueDays > 0) {
-            K2530341_FineStrategy fineStrategy = getFineStrategy(user.getMembershipType());
-            double fine = fineStrategy.calculateFine(overdueDays);
-            borrow.setFinePaid(fine);
-            user.addFine(fine);
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(borrow.getBookId()), userKey(borrow.getUserId()))) {
+            K2530341_Book book = books.get(borrow.getBookId());
+            K2530341_User user = users.get(borrow.getUserId());
+            if (borrow.getReturnDate() == null || book == null || user == null
+                    || book.getAvailabilityStatus() != K2530341_AvailabilityStatus.AVAILABLE
+                    || user.getCurrentBorrowCount() >= user.getMembershipType().getBorrowLimit()) {
+                return false;
+            }
             
-            // Create notification
-            createNotification(user.getUserId(), K2530341_NotificationType.OVERDUE_ALERT,
-                "Fine of LKR " + fine + " for " + overdueDays + " days overdue on book: " + book.getTitle());
-        }
-        
-        // Update user
-        user.decrementBorrowCount();
-        
-        // Check for reservations
-        K2530341_Reservation nextReservation = getNextPendingReservation(book.getBookId());
-        if (nextReservation != null) {
-            // Notify reserver
-            nextReservation.setStatus(K2530341_ReservationStatus.NOTIFIED);
-            nextReservation.setNotifiedAt(LocalDateTime.now());
-            book.setAvailabilityStatus(K2530341_AvailabilityStatus.RESERVED);
-            book.performReserve();
+            // Take back the fine the return charged, unless the patron has paid
+            // since - reversing it then would forgive their other fines instead
+            double fine = borrow.getFinePaid();
+            if (fine > user.getUnpaidFines()) {
+                return false;
+            }
+            if (fine > 0) {
+                user.payFine(fine);
+                withdrawNotice(fineNotice(borrow, book));
+            }
+            borrow.setFinePaid(0.0);
+            borrow.setReturnDate(null);
+            borrowIndex.markReopened(borrow);
+            userIndex.setActiveBorrows(borrow.getUserId(), true);
             
-            createNotification(nextReservation.getUserId(), K2530341_NotificationType.RESERVATION_READY,
-                "Your reserved book '" + book.getTitle() + "' is now available. Please collect within 48 hours.");
-        } else {
-            // Book becomes available
-            book.setAvailabilityStatus(K2530341_AvailabilityStatus.AVAILABLE);
-            book.performReturn();
+            setBookStatus(book, K2530341_AvailabilityStatus.BORROWED);
+            book.performBorrow();
+            user.incrementBorrowCount();
+            
+            markDirty(K2530341_DataTable.BORROWS, borrowId);
+            markDirty(K2530341_DataTable.BOOKS, book.getBookId());
+            markDirty(K2530341_DataTable.USERS, user.getUserId());
+            scheduleLoanEvents(borrow);
+            persistChanges();
+            return true;
         }
-        
-        saveAllData();
-        return true;
     }
     
     // ========== RESERVATION OPERATIONS ==========
     
     public String reserveBook(String bookId, String userId) {
-        K2530341_Book book = books.get(bookId);
-        K2530341_User user = users.get(userId);
-        
-        if (book == null || user == null) {
-            return null;
-        }
-        
-        // FIX 1: Don't allow reservation of AVAILABLE books - they should be borrowed instead
-        if (book.getAvailabilityStatus() == K2530341_AvailabilityStatus.AVAILABLE) {
-            return "AVAILABLE"; // Special return value to indicate book is available to borrow
-        }
-        
-        // FIX 2: Don't allow user to reserve a book they currently have borrowed
-        boolean alreadyBorrowed = borrows.values().stream()
-            .anyMatch(b -> b.getBookId().equals(bookId) 
-                    && b.getUserId().equals(userId) 
-                    && b.getReturnDate() == null);
-        
-        if (alreadyBorrowed) {
-            return "ALREADY_BORROWED"; // Special return value
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(bookId), userKey(userId))) {
+            K2530341_Book book = books.get(bookId);
+            K2530341_User user = users.get(userId);
+            
+            if (book == null || user == null) {
+                return null;
+            }
+            
+            // FIX 1: Don't allow reservation of AVAILABLE books - they should be borrowed instead
+            if (book.getAvailabilityStatus() == K2530341_AvailabilityStatus.AVAILABLE) {
+                return "AVAILABLE"; // Special return value to indicate book is available to borrow
+            }
+            
+            // FIX 2: Don't allow user to reserve a book they currently have borrowed
+            if (borrowIndex.hasOpenBorrow(bookId, userId)) {
+                return "ALREADY_BORROWED"; // Special return value
+            }
+            
+            // Create reservation with structured ID
+            String reservationId = idAllocator.next(K2530341_IdGenerator.RESERVATION_PREFIX);
+            K2530341_Reservation reservation = new K2530341_Reservation(
+                reservationId, bookId, userId, LocalDateTime.now(), K2530341_ReservationStatus.PENDING
+            );
+            reservations.put(reservationId, reservation);
+            reservationIndex.add(reservation);
+            
+            // Attach user as observer to book
+            book.attach(user);
+            
+            markDirty(K2530341_DataTable.RESERVATIONS, reservationId);
+            persistChanges();
+            return reservationId;
         }
-        
-        // Create reservation with structured ID
-        String reservationId = "RES-" + String.format("%04d", reservationIdCounter++);
-        K2530341_Reservation reservation = new K2530341_Reservation(
-            reservationId, bookId, userId, LocalDateTime.now(), K2530341_ReservationStatus.PENDING
-        );
-        reservations.put(reservationId, reservation);
-        
-        // Attach user as observer to book
-        book.attach(user);
-        
-        saveAllData();
-        return reservationId;
     }
     
     public boolean cancelReservation(String reservationId) {
@@ -448,24 +1372,204 @@ public class K2530341_LibraryService {
             return false;
         }
         
-        reservation.setStatus(K2530341_ReservationStatus.CANCELLED);
-        
-        // Detach user from book
-        K2530341_Book book = books.get(reservation.getBookId());
-        K2530341_User user = users.get(reservation.getUserId());
-        if (book != null && user != null) {
-            book.detach(user);
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(reservation.getBookId()), userKey(reservation.getUserId()))) {
+            boolean wasHeld = reservation.getStatus() == K2530341_ReservationStatus.NOTIFIED;
+            setReservationStatus(reservation, K2530341_ReservationStatus.CANCELLED);
+            
+            // Detach user from book
+            K2530341_Book book = books.get(reservation.getBookId());
+            K2530341_User user = users.get(reservation.getUserId());
+            if (book != null && user != null) {
+                book.detach(user);
+            }
+            
+            markDirty(K2530341_DataTable.RESERVATIONS, reservationId);
+            if (wasHeld) {
+                // Give up the hold the same way an expiry does
+                List<K2530341_NotificationRequest> notices = new ArrayList<>();
+                passHoldOn(book, LocalDateTime.now(), notices);
+                addNotifications(notices);
+            }
+            persistChanges();
+            return true;
         }
-        
-        saveAllData();
-        return true;
     }
     
+    private static String bookKey(String bookId) {
+        return "book:" + bookId;
+    }
+    
+    private static String userKey(String userId) {
+        return "user:" + userId;
+    }
+    
+    // oldest pending reservation for the book - head of its queue in the reservation index
     private K2530341_Reservation getNextPendingReservation(String bookId) {
-        return reservations.values().stream()
-            .filter(r -> r.getBookId().equals(bookId) && r.getStatus() == K2530341_ReservationStatus.PENDING)
-            .min(Comparator.comparing(K2530341_Reservation::getReservationDate))
-            .orElse(null);
+        return reservationIndex.peekPending(bookId);
+    }
+    
+    // change a book's availability status and keep the facet index in step
+    private void setBookStatus(K2530341_Book book, K2530341_AvailabilityStatus status) {
+        book.setAvailabilityStatus(status);
+        facetIndex.updateStatus(book);
+    }
+    
+    // put a reservation on the hold shelf from the given time and queue its expiry
+    private void holdFor(K2530341_Reservation reservation, LocalDateTime notifiedAt) {
+        setReservationStatus(reservation, K2530341_ReservationStatus.NOTIFIED);
+        reservation.setNotifiedAt(notifiedAt);
+        scheduleExpiry(reservation);
+    }
+    
+    private void scheduleExpiry(K2530341_Reservation reservation) {
+        if (reservation.getNotifiedAt() != null) {
+            String reservationId = reservation.getReservationId();
+            replaceTimer(holdTimers, reservationId, timers.schedule(
+                epochMillis(reservation.getNotifiedAt().plus(holdDuration)), onWriter(() -> expireHold(reservationId))));
+        }
+    }
+    
+    // queue the next reminder event of an open loan that is still ahead
+    private void scheduleLoanEvents(K2530341_Borrow borrow) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate dueDate = borrow.getDueDate();
+        if (dueDate.minusDays(DUE_SOON_DAYS).atStartOfDay().isAfter(now)) {
+            scheduleLoanEvent(borrow.getBorrowId(), dueDate.minusDays(DUE_SOON_DAYS), () -> remindDueSoon(borrow.getBorrowId()));
+            return;
+        }
+        long overdueDays = 1;
+        while (!dueDate.plusDays(overdueDays).atStartOfDay().isAfter(now)) {
+            overdueDays += OVERDUE_CHECKPOINT_DAYS;
+        }
+        scheduleOverdueCheckpoint(borrow, overdueDays);
+    }
+    
+    private void scheduleOverdueCheckpoint(K2530341_Borrow borrow, long overdueDays) {
+        scheduleLoanEvent(borrow.getBorrowId(), borrow.getDueDate().plusDays(overdueDays),
+            () -> remindOverdue(borrow.getBorrowId(), overdueDays));
+    }
+    
+    private void scheduleLoanEvent(String borrowId, LocalDate day, Runnable event) {
+        replaceTimer(loanTimers, borrowId, timers.schedule(epochMillis(day.atStartOfDay()), onWriter(event)));
+    }
+    
+    // a timing wheel task that hands its event to the writer thread rather than changing state on the wheel's thread
+    private Runnable onWriter(Runnable event) {
+        return () -> pipeline.submit(() -> {
+            event.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Get the single-writer pipeline every mutation goes through; the async
+     * service submits the UI's mutations to it and the timing wheel its events.
+     * @return The service's command pipeline
+     */
+    public K2530341_CommandPipeline getCommandPipeline() {
+        return pipeline;
+    }
+    
+    private static void replaceTimer(Map<String, K2530341_TimingWheel.Timeout> pending, String id,
+                                     K2530341_TimingWheel.Timeout timeout) {
+        K2530341_TimingWheel.Timeout previous = pending.put(id, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+    
+    private static void cancelTimer(Map<String, K2530341_TimingWheel.Timeout> pending, String id) {
+        K2530341_TimingWheel.Timeout timeout = pending.remove(id);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+    
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    // timing wheel event: the loan is due in DUE_SOON_DAYS days
+    private void remindDueSoon(String borrowId) {
+        K2530341_Borrow borrow = borrows.get(borrowId);
+        if (borrow == null) {
+            return;
+        }
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(borrow.getBookId()), userKey(borrow.getUserId()))) {
+            if (borrow.getReturnDate() != null) {
+                return;
+            }
+            K2530341_Book book = books.get(borrow.getBookId());
+            if (autoReminders && book != null) {
+                addNotification(borrow.getUserId(), K2530341_NotificationType.DUE_REMINDER,
+                    "Reminder: '" + book.getTitle() + "' is due in " + DUE_SOON_DAYS + " days (Due: " + borrow.getDueDate() + ")");
+            }
+            scheduleOverdueCheckpoint(borrow, 1);
+        }
+    }
+    
+    // timing wheel event: the loan has been overdue for the given number of days
+    private void remindOverdue(String borrowId, long overdueDays) {
+        K2530341_Borrow borrow = borrows.get(borrowId);
+        if (borrow == null) {
+            return;
+        }
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(borrow.getBookId()), userKey(borrow.getUserId()))) {
+            if (borrow.getReturnDate() != null) {
+                return;
+            }
+            K2530341_Book book = books.get(borrow.getBookId());
+            K2530341_User user = users.get(borrow.getUserId());
+            if (autoReminders && book != null && user != null) {
+                double fine = getFineStrategy(user.getMembershipType()).calculateFine(overdueDays);
+                addNotification(user.getUserId(), K2530341_NotificationType.OVERDUE_ALERT,
+                    "OVERDUE ALERT: '" + book.getTitle() + "' is " + overdueDays + " days overdue! " +
+                    "Fine so far: LKR " + fine + ". Please return immediately.");
+            }
+            scheduleOverdueCheckpoint(borrow, overdueDays + OVERDUE_CHECKPOINT_DAYS);
+        }
+    }
+    
+    /**
+     * Turn the automatic due-soon and overdue reminders on or off (the
+     * librarian can still send them by hand). On by default.
+     * @param autoReminders true to send them when due
+     */
+    public void setAutoReminders(boolean autoReminders) {
+        this.autoReminders = autoReminders;
+    }
+    
+    public boolean isAutoReminders() {
+        return autoReminders;
+    }
+    
+    /**
+     * Run the timed events due up to the given time now, without waiting
+     * for the wall clock (for tests).
+     * @param time Time to move the timing wheel on to
+     */
+    void runTimersUntil(LocalDateTime time) {
+        timers.advanceTo(epochMillis(time));
+        pipeline.drain();
+    }
+    
+    /**
+     * Set how long a NOTIFIED reservation holds its book. Applies to holds
+     * scheduled from now on.
+     * @param holdDuration Hold length, {@link #HOLD_HOURS} hours by default
+     */
+    void setHoldDuration(Duration holdDuration) {
+        this.holdDuration = holdDuration;
+    }
+    
+    // change a reservation's status and keep the reservation index in step
+    private void setReservationStatus(K2530341_Reservation reservation, K2530341_ReservationStatus status) {
+        reservationIndex.remove(reservation);
+        reservation.setStatus(status);
+        reservationIndex.add(reservation);
+        if (status != K2530341_ReservationStatus.NOTIFIED) {
+            cancelTimer(holdTimers, reservation.getReservationId()); // hold collected, cancelled or expired
+        }
     }
     
     public List<K2530341_Reservation> getUserReservations(String userId) {
@@ -474,19 +1578,110 @@ public class K2530341_LibraryService {
             .collect(Collectors.toList());
     }
     
+    /**
+     * Get the notified reservation currently holding a book.
+     * @param bookId Book ID
+     * @return The notified reservation, or null if the book is not held
+     */
+    public K2530341_Reservation getNotifiedReservation(String bookId) {
+        return reservationIndex.findNotified(bookId);
+    }
+    
     public List<K2530341_Reservation> getAllReservations() {
         return new ArrayList<>(reservations.values());
     }
     
+    /**
+     * Get one page of reservations, ordered by reservation ID.
+     * @param cursor Next cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of reservations on the page
+     * @return Page of reservations with the cursor for the next one
+     */
+    public K2530341_Page<K2530341_Reservation> getReservationsPage(String cursor, int pageSize) {
+        return page(reservations, cursor, pageSize, reservations::get);
+    }
+    
     // ========== NOTIFICATION OPERATIONS ==========
     
     public void createNotification(String userId, K2530341_NotificationType type, String message) {
-        String notificationId = "NTF-" + String.format("%04d", notificationIdCounter++);
-        K2530341_Notification notification = new K2530341_Notification(
-            notificationId, userId, type, message, LocalDate.now(), false
-        );
-        notifications.put(notificationId, notification);
-        saveAllData();
+        addNotification(userId, type, message);
+        persistChanges();
+    }
+    
+    /**
+     * Create many notifications at once (mass reminders, overdue sweeps):
+     * their IDs are taken as one block and they are persisted together.
+     * @param requests Notifications to create
+     * @return IDs of the new notifications, in request order
+     */
+    public List<String> createNotifications(Collection<K2530341_NotificationRequest> requests) {
+        List<String> notificationIds = addNotifications(requests);
+        persistChanges();
+        return notificationIds;
+    }
+    
+    // adds the notification without saving - callers persist once when their operation is done
+    private void addNotification(String userId, K2530341_NotificationType type, String message) {
+        addNotifications(List.of(new K2530341_NotificationRequest(userId, type, message)));
+    }
+    
+    private List<String> addNotifications(Collection<K2530341_NotificationRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        List<String> notificationIds = idAllocator.next(K2530341_IdGenerator.NOTIFICATION_PREFIX, requests.size());
+        LocalDate today = LocalDate.now();
+        Iterator<String> ids = notificationIds.iterator();
+        for (K2530341_NotificationRequest request : requests) {
+            String notificationId = ids.next();
+            notifications.put(notificationId, new K2530341_Notification(
+                notificationId, request.getUserId(), request.getType(), request.getMessage(), today, false
+            ));
+        }
+        markDirty(K2530341_DataTable.NOTIFICATIONS, notificationIds);
+        return notificationIds;
+    }
+    
+    // tell the next user in the queue that the book is on the hold shelf for them
+    private K2530341_NotificationRequest holdReadyNotice(K2530341_Reservation reservation, K2530341_Book book) {
+        return new K2530341_NotificationRequest(reservation.getUserId(), K2530341_NotificationType.RESERVATION_READY,
+            "Your reserved book '" + book.getTitle() + "' is now available. Please collect within "
+                + describeHold(holdDuration) + ".");
+    }
+    
+    // tell the user what the late return of a borrow cost them (the borrow holds its return date and fine)
+    private K2530341_NotificationRequest fineNotice(K2530341_Borrow borrow, K2530341_Book book) {
+        return new K2530341_NotificationRequest(borrow.getUserId(), K2530341_NotificationType.OVERDUE_ALERT,
+            "Fine of LKR " + borrow.getFinePaid() + " for " + borrow.getOverdueDays()
+                + " days overdue on book: " + book.getTitle());
+    }
+    
+    // remove the newest notification matching the request, e.g. when the operation behind it is undone
+    private void withdrawNotice(K2530341_NotificationRequest request) {
+        notifications.values().stream()
+            .filter(n -> n.getUserId().equals(request.getUserId()) && n.getType() == request.getType()
+                && n.getMessage().equals(request.getMessage()))
+            .max(Comparator.comparingInt(n -> K2530341_IdGenerator.parse(
+                K2530341_IdGenerator.NOTIFICATION_PREFIX, n.getNotificationId())))
+            .ifPresent(n -> {
+                notifications.remove(n.getNotificationId());
+                markDirty(K2530341_DataTable.NOTIFICATIONS, n.getNotificationId());
+            });
+    }
+    
+    // hold length in the largest whole unit, e.g. "48 hours" or "90 minutes" (rounded up to a second)
+    static String describeHold(Duration hold) {
+        long seconds = Math.max(1, (hold.toMillis() + 999) / 1000);
+        long amount = seconds;
+        String unit = "second";
+        if (seconds % 3600 == 0) {
+            amount = seconds / 3600;
+            unit = "hour";
+        } else if (seconds % 60 == 0) {
+            amount = seconds / 60;
+            unit = "minute";
+        }
+        return amount + " " + unit + (amount == 1 ? "" : "s");
     }
     
     public List<K2530341_Notification> getUserNotifications(String userId) {
@@ -512,64 +1707,158 @@ public class K2530341_LibraryService {
     }
     
     public List<K2530341_Borrow> getUserBorrows(String userId) {
-        return borrows.values().stream()
-            .filter(b -> b.getUserId().equals(userId))
-            .collect(Collectors.toList());
+        return borrowIndex.getByUser(userId);
     }
     
     public List<K2530341_Borrow> getActiveBorrows(String userId) {
-        return borrows.values().stream()
-            .filter(b -> b.getUserId().equals(userId) && b.getReturnDate() == null)
-            .collect(Collectors.toList());
+        return borrowIndex.getOpenByUser(userId);
+    }
+    
+    /**
+     * Get the open borrow of a book, if it is currently out.
+     * @param bookId Book ID
+     * @return The open borrow record, or null if the book is not borrowed
+     */
+    public K2530341_Borrow getCurrentBorrow(String bookId) {
+        List<K2530341_Borrow> open = borrowIndex.getOpenByBook(bookId);
+        return open.isEmpty() ? null : open.get(0);
     }
     
     public List<K2530341_Borrow> getAllBorrows() {
         return new ArrayList<>(borrows.values());
     }
     
+    /**
+     * Get one page of borrow records, ordered by borrow ID.
+     * @param cursor Next cursor of the previous page, or null for the first page
+     * @param pageSize Maximum number of records on the page
+     * @return Page of borrow records with the cursor for the next one
+     */
+    public K2530341_Page<K2530341_Borrow> getBorrowsPage(String cursor, int pageSize) {
+        return page(borrows, cursor, pageSize, borrows::get);
+    }
+    
+    // the entries after the cursor ID, up to pageSize of them, each looked up by ID
+    // (IDs the lookup does not know yet are skipped)
+    private static <T> K2530341_Page<T> page(NavigableMap<String, ?> entities, String cursor, int pageSize,
+                                             Function<String, T> lookup) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        NavigableSet<String> remaining = cursor == null ? entities.navigableKeySet() : entities.navigableKeySet().tailSet(cursor, false);
+        List<T> items = new ArrayList<>(Math.min(pageSize, remaining.size()));
+        String lastId = null;
+        for (String id : remaining) {
+            if (items.size() == pageSize) {
+                return new K2530341_Page<>(items, lastId, entities.size());
+            }
+            T item = lookup.apply(id);
+            if (item != null) {
+                items.add(item);
+            }
+            lastId = id;
+        }
+        return new K2530341_Page<>(items, null, entities.size());
+    }
+    
     public List<K2530341_Borrow> getOverdueBorrows() {
-        return borrows.values().stream()
-            .filter(b -> b.getReturnDate() == null && b.isOverdue())
-            .collect(Collectors.toList());
+        return getOverdueBorrows(LocalDate.now());
+    }
+    
+    /**
+     * Get the open borrows that are overdue on a given date (due before it).
+     * @param asOf Reference date
+     * @return Overdue borrows, earliest due first
+     */
+    public List<K2530341_Borrow> getOverdueBorrows(LocalDate asOf) {
+        return borrowIndex.getOpenDueBefore(asOf);
+    }
+    
+    /**
+     * Get the open borrows due between two dates, both inclusive.
+     * @param from First due date
+     * @param to Last due date
+     * @return Matching borrows, earliest due first
+     */
+    public List<K2530341_Borrow> getBorrowsDueBetween(LocalDate from, LocalDate to) {
+        return borrowIndex.getOpenDueBetween(from, to);
+    }
+    
+    /**
+     * Get the open borrows due from today up to the given number of days ahead.
+     * @param days Days ahead of today (inclusive)
+     * @return Matching borrows, earliest due first
+     */
+    public List<K2530341_Borrow> getBorrowsDueWithin(int days) {
+        LocalDate today = LocalDate.now();
+        return getBorrowsDueBetween(today, today.plusDays(days));
     }
     
     /**
-     * Clean up expired reservations (older than 48 hours since notification).
+     * Clean up expired reservations (notified longer ago than the hold period).
      * This releases reserved books back to available or next reservation.
+     * Run once at startup for holds that ran out while the app was closed;
+     * after that the timing wheel expires each hold when it is due.
      */
     public void cleanupExpiredReservations() {
         LocalDateTime now = LocalDateTime.now();
-        boolean dataChanged = false;
         
-        List<K2530341_Reservation> expiredReservations = reservations.values().stream()
-            .filter(r -> r.getStatus() == K2530341_ReservationStatus.NOTIFIED 
-                    && r.getNotifiedAt() != null
-                    && now.isAfter(r.getNotifiedAt().plusHours(48)))
+        List<K2530341_Reservation> expiredReservations = reservationIndex.getNotified().stream()
+            .filter(r -> r.getNotifiedAt() != null
+                    && now.isAfter(r.getNotifiedAt().plus(holdDuration)))
             .collect(Collectors.toList());
         
+        List<K2530341_NotificationRequest> notices = new ArrayList<>();
         for (K2530341_Reservation expired : expiredReservations) {
-            expired.setStatus(K2530341_ReservationStatus.EXPIRED);
-            K2530341_Book book = books.get(expired.getBookId());
-            
-            if (book != null && book.getAvailabilityStatus() == K2530341_AvailabilityStatus.RESERVED) {
-                // Check for next pending reservation
-                K2530341_Reservation nextReservation = getNextPendingReservation(expired.getBookId());
-                if (nextReservation != null) {
-                    // Notify next person in queue
-                    nextReservation.setStatus(K2530341_ReservationStatus.NOTIFIED);
-                    nextReservation.setNotifiedAt(now);
-                    createNotification(nextReservation.getUserId(), K2530341_NotificationType.RESERVATION_READY,
-                        "Your reserved book '" + book.getTitle() + "' is now available. Please collect within 48 hours.");
-                } else {
-                    // No more reservations, make book available
-                    book.setAvailabilityStatus(K2530341_AvailabilityStatus.AVAILABLE);
-                }
-                dataChanged = true;
-            }
+            expireIfDue(expired, now, notices);
         }
         
-        if (dataChanged) {
-            saveAllData();
+        // one block of IDs for everyone the sweep moved up the queue
+        addNotifications(notices);
+        persistChanges();
+    }
+    
+    // timing wheel event - the hold may have ended early, so check again
+    private void expireHold(String reservationId) {
+        K2530341_Reservation reservation = reservations.get(reservationId);
+        List<K2530341_NotificationRequest> notices = new ArrayList<>();
+        if (reservation != null && expireIfDue(reservation, LocalDateTime.now(), notices)) {
+            addNotifications(notices);
+        }
+    }
+    
+    // expire a hold that is still open and past its deadline, handing the book on
+    // (the caller creates the notices and persists)
+    private boolean expireIfDue(K2530341_Reservation expired, LocalDateTime now,
+                                List<K2530341_NotificationRequest> notices) {
+        try (K2530341_LockStripes.Guard guard = locks.lock(bookKey(expired.getBookId()))) {
+            if (expired.getStatus() != K2530341_ReservationStatus.NOTIFIED || expired.getNotifiedAt() == null
+                    || now.isBefore(expired.getNotifiedAt().plus(holdDuration))) {
+                return false; // borrowed, cancelled or expired meanwhile, or not due yet
+            }
+            setReservationStatus(expired, K2530341_ReservationStatus.EXPIRED);
+            markDirty(K2530341_DataTable.RESERVATIONS, expired.getReservationId());
+            passHoldOn(books.get(expired.getBookId()), now, notices);
+            return true;
+        }
+    }
+    
+    // a reserved book's hold ended without a borrow - hold it for the next in
+    // the queue or put it back on the shelf (the caller holds the book stripe)
+    private void passHoldOn(K2530341_Book book, LocalDateTime now, List<K2530341_NotificationRequest> notices) {
+        if (book != null && book.getAvailabilityStatus() == K2530341_AvailabilityStatus.RESERVED) {
+            // Check for next pending reservation
+            K2530341_Reservation nextReservation = getNextPendingReservation(book.getBookId());
+            if (nextReservation != null) {
+                // Notify next person in queue
+                holdFor(nextReservation, now);
+                markDirty(K2530341_DataTable.RESERVATIONS, nextReservation.getReservationId());
+                notices.add(holdReadyNotice(nextReservation, book));
+            } else {
+                // No more reservations, make book available
+                setBookStatus(book, K2530341_AvailabilityStatus.AVAILABLE);
+            }
+            markDirty(K2530341_DataTable.BOOKS, book.getBookId());
         }
     }
     
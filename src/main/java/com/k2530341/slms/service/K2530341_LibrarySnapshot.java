@@ -0,0 +1,87 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.K2530341_Borrow;
+import com.k2530341.slms.model.book.K2530341_Book;
+import com.k2530341.slms.model.user.K2530341_User;
+
+import java.util.*;
+
+/**
+ * One published version of the books, users and borrows for readers
+ * (reports, table refreshes). The entities in it are copies the service
+ * never changes, so a reader that holds on to a snapshot sees one
+ * consistent state for as long as it likes while borrow/return carry on;
+ * readers must treat them as read-only too. Each version shares every
+ * unchanged entity with the one before it.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public final class K2530341_LibrarySnapshot {
+    static final K2530341_LibrarySnapshot EMPTY = new K2530341_LibrarySnapshot(0,
+        K2530341_PersistentMap.empty(), K2530341_PersistentMap.empty(), K2530341_PersistentMap.empty());
+    
+    private final long version;
+    private final K2530341_PersistentMap<K2530341_Book> books;
+    private final K2530341_PersistentMap<K2530341_User> users;
+    private final K2530341_PersistentMap<K2530341_Borrow> borrows;
+    
+    private K2530341_LibrarySnapshot(long version, K2530341_PersistentMap<K2530341_Book> books,
+                                     K2530341_PersistentMap<K2530341_User> users,
+                                     K2530341_PersistentMap<K2530341_Borrow> borrows) {
+        this.version = version;
+        this.books = books;
+        this.users = users;
+        this.borrows = borrows;
+    }
+    
+    /**
+     * Build the next version from the entities changed since this one.
+     * @param changedBooks Copy per changed book ID, null for a deleted book
+     * @param changedUsers Copy per changed user ID, null for a deleted user
+     * @param changedBorrows Copy per changed borrow ID, null for a deleted borrow
+     * @return Next snapshot
+     */
+    K2530341_LibrarySnapshot with(Map<String, K2530341_Book> changedBooks, Map<String, K2530341_User> changedUsers,
+                                  Map<String, K2530341_Borrow> changedBorrows) {
+        return new K2530341_LibrarySnapshot(version + 1, books.with(changedBooks), users.with(changedUsers),
+            borrows.with(changedBorrows));
+    }
+    
+    /**
+     * @return Version number, increasing with every published change
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public K2530341_Book getBook(String bookId) {
+        return books.get(bookId);
+    }
+    
+    public K2530341_User getUser(String userId) {
+        return users.get(userId);
+    }
+    
+    public K2530341_Borrow getBorrow(String borrowId) {
+        return borrows.get(borrowId);
+    }
+    
+    public List<K2530341_Book> getBooks() {
+        return books.values();
+    }
+    
+    public List<K2530341_User> getUsers() {
+        return users.values();
+    }
+    
+    public List<K2530341_Borrow> getBorrows() {
+        return borrows.values();
+    }
+    
+    public int getBookCount() {
+        return books.size();
+    }
+    
+    public int getUserCount() {
+        return users.size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.k2530341.slms.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks shared out by key hash, so operations on different
+ * books/users run in parallel while operations on the same one queue up.
+ * Several keys are always locked in stripe order, which rules out deadlock
+ * between two operations that need the same pair of stripes.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_LockStripes {
+    private final ReentrantLock[] locks;
+    
+    /**
+     * Held stripes; closing the guard releases them.
+     */
+    static final class Guard implements AutoCloseable {
+        private final ReentrantLock[] held;
+        
+        private Guard(ReentrantLock[] held) {
+            this.held = held;
+        }
+        
+        @Override
+        public void close() {
+            for (int i = held.length - 1; i >= 0; i--) {
+                held[i].unlock();
+            }
+        }
+    }
+    
+    /**
+     * @param stripes Number of locks (rounded up to a power of two)
+     */
+    K2530341_LockStripes(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * Lock the stripes of the given keys, e.g. "book:BK-001", "user:STU-001".
+     * Use with try-with-resources.
+     * @param keys Keys to lock (null keys are ignored)
+     * @return Guard releasing the stripes on close
+     */
+    Guard lock(String... keys) {
+        int[] stripes = new int[keys.length];
+        int count = 0;
+        for (String key : keys) {
+            if (key != null) {
+                stripes[count++] = stripe(key);
+            }
+        }
+        stripes = Arrays.stream(stripes, 0, count).sorted().distinct().toArray();
+        
+        ReentrantLock[] held = new ReentrantLock[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            held[i] = locks[stripes[i]];
+            held[i].lock();
+        }
+        return new Guard(held);
+    }
+    
+    private int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (locks.length - 1);
+    }
+}
@@ -0,0 +1,39 @@
+package com.k2530341.slms.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a cursor-based query, ordered by ID.
+ * Pass getNextCursor() back to the query to get the following page; it is
+ * null on the last page. Cursors are plain IDs, so they stay valid when
+ * records are added or removed between calls.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+    private final int totalCount;
+    
+    public K2530341_Page(List<T> items, String nextCursor, int totalCount) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+        this.totalCount = totalCount;
+    }
+    
+    public List<T> getItems() {
+        return items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+    
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
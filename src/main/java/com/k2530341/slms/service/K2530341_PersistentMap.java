@@ -0,0 +1,89 @@
+package com.k2530341.slms.service;
+
+import java.util.*;
+
+/**
+ * Immutable map from ID to value, split by key hash into a fixed number of
+ * buckets. A new version copies the bucket array and only the buckets its
+ * changes touch; every other bucket is shared with the previous version, so
+ * publishing one checkout costs a few small copies however large the map.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+final class K2530341_PersistentMap<V> {
+    private static final int BUCKETS = 256;
+    private static final K2530341_PersistentMap<?> EMPTY = new K2530341_PersistentMap<>(emptyBuckets(), 0);
+    
+    private final Map<String, V>[] buckets;
+    private final int size;
+    
+    private K2530341_PersistentMap(Map<String, V>[] buckets, int size) {
+        this.buckets = buckets;
+        this.size = size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    static <V> K2530341_PersistentMap<V> empty() {
+        return (K2530341_PersistentMap<V>) EMPTY;
+    }
+    
+    /**
+     * Build the next version.
+     * @param changes New value per ID, null to remove the ID
+     * @return Map with the changes applied (this map is unchanged)
+     */
+    K2530341_PersistentMap<V> with(Map<String, V> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        Map<String, V>[] next = buckets.clone();
+        boolean[] copied = new boolean[BUCKETS];
+        int nextSize = size;
+        for (Map.Entry<String, V> change : changes.entrySet()) {
+            int bucket = bucket(change.getKey());
+            if (!copied[bucket]) {
+                next[bucket] = new HashMap<>(next[bucket]);
+                copied[bucket] = true;
+            }
+            V previous = change.getValue() == null
+                ? next[bucket].remove(change.getKey())
+                : next[bucket].put(change.getKey(), change.getValue());
+            if (previous == null && change.getValue() != null) {
+                nextSize++;
+            } else if (previous != null && change.getValue() == null) {
+                nextSize--;
+            }
+        }
+        return new K2530341_PersistentMap<>(next, nextSize);
+    }
+    
+    V get(String key) {
+        return key == null ? null : buckets[bucket(key)].get(key);
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * @return Every value, in no particular order
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        for (Map<String, V> bucket : buckets) {
+            values.addAll(bucket.values());
+        }
+        return values;
+    }
+    
+    private static int bucket(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (BUCKETS - 1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <V> Map<String, V>[] emptyBuckets() {
+        Map<String, V>[] buckets = new Map[BUCKETS];
+        Arrays.fill(buckets, Collections.emptyMap());
+        return buckets;
+    }
+}
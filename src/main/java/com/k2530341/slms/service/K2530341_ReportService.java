@@ -21,39 +21,45 @@ public class K2530341_ReportService {
     }
     
     /**
-     * Get most borrowed books.
+     * Get most borrowed books, from the current read snapshot.
      * @param topN Number of top books to retrieve
      * @return List of books sorted by borrow count
      */
     public List<K2530341_Book> getMostBorrowedBooks(int topN) {
-        return libraryService.getAllBooks().stream()
+        return libraryService.getSnapshot().getBooks().stream()
             .sorted(Comparator.comparingInt(K2530341_Book::getBorrowHistoryCount).reversed())
             .limit(topN)
             .collect(Collectors.toList());
     }
     
     /**
-     * Get most active borrowers.
+     * Get most active borrowers, from the current read snapshot.
      * @param topN Number of top borrowers to retrieve
      * @return List of users sorted by current borrow count
      */
     public List<K2530341_User> getActiveBorrowers(int topN) {
-        return libraryService.getAllUsers().stream()
+        return libraryService.getSnapshot().getUsers().stream()
             .sorted(Comparator.comparingInt(K2530341_User::getCurrentBorrowCount).reversed())
             .limit(topN)
             .collect(Collectors.toList());
     }
     
     /**
-     * Get overdue books with borrower details.
+     * Get overdue books with borrower details, all taken from one read snapshot.
      * @return List of overdue borrow records
      */
     public List<Map<String, Object>> getOverdueReport() {
         List<Map<String, Object>> report = new ArrayList<>();
+        K2530341_LibrarySnapshot snapshot = libraryService.getSnapshot();
         
-        for (K2530341_Borrow borrow : libraryService.getOverdueBorrows()) {
-            K2530341_Book book = libraryService.getBook(borrow.getBookId());
-            K2530341_User user = libraryService.getUser(borrow.getUserId());
+        for (K2530341_Borrow overdue : libraryService.getOverdueBorrows()) {
+            // the live list only says which borrows to look at; skip any the snapshot has not caught up with
+            K2530341_Borrow borrow = snapshot.getBorrow(overdue.getBorrowId());
+            if (borrow == null || borrow.getReturnDate() != null || !borrow.isOverdue()) {
+                continue;
+            }
+            K2530341_Book book = snapshot.getBook(borrow.getBookId());
+            K2530341_User user = snapshot.getUser(borrow.getUserId());
             
             if (book != null && user != null) {
                 Map<String, Object> record = new HashMap<>();
@@ -0,0 +1,110 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.reservation.K2530341_Reservation;
+import com.k2530341.slms.model.reservation.K2530341_ReservationStatus;
+
+import java.util.*;
+
+/**
+ * Secondary indexes over the reservations, kept in step by the library service.
+ * Pending reservations are queued per book in reservation order, and notified
+ * reservations are looked up by (book, user) and by book, so the borrow/return
+ * paths do not have to scan every reservation ever made.
+ * A reservation must be removed before its status changes and added again after.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_ReservationIndex {
+    private static final Comparator<K2530341_Reservation> QUEUE_ORDER =
+        Comparator.comparing(K2530341_Reservation::getReservationDate)
+            .thenComparing(K2530341_Reservation::getReservationId);
+    
+    private final Map<String, PriorityQueue<K2530341_Reservation>> pendingByBook = new HashMap<>();
+    private final Map<String, K2530341_Reservation> notifiedByBookUser = new HashMap<>();
+    private final Map<String, K2530341_Reservation> notifiedByBook = new HashMap<>();
+    
+    /**
+     * Index a reservation under its current status.
+     * Only PENDING and NOTIFIED reservations are indexed.
+     * @param reservation Reservation to index
+     */
+    synchronized void add(K2530341_Reservation reservation) {
+        if (reservation.getStatus() == K2530341_ReservationStatus.PENDING) {
+            pendingByBook.computeIfAbsent(reservation.getBookId(), id -> new PriorityQueue<>(QUEUE_ORDER))
+                .add(reservation);
+        } else if (reservation.getStatus() == K2530341_ReservationStatus.NOTIFIED) {
+            notifiedByBookUser.put(key(reservation.getBookId(), reservation.getUserId()), reservation);
+            notifiedByBook.put(reservation.getBookId(), reservation);
+        }
+    }
+    
+    /**
+     * Remove a reservation from the index it is in under its current status.
+     * @param reservation Reservation to remove
+     */
+    synchronized void remove(K2530341_Reservation reservation) {
+        if (reservation.getStatus() == K2530341_ReservationStatus.PENDING) {
+            PriorityQueue<K2530341_Reservation> queue = pendingByBook.get(reservation.getBookId());
+            if (queue != null) {
+                queue.remove(reservation);
+                if (queue.isEmpty()) {
+                    pendingByBook.remove(reservation.getBookId());
+                }
+            }
+        } else if (reservation.getStatus() == K2530341_ReservationStatus.NOTIFIED) {
+            notifiedByBookUser.remove(key(reservation.getBookId(), reservation.getUserId()), reservation);
+            notifiedByBook.remove(reservation.getBookId(), reservation);
+        }
+    }
+    
+    /**
+     * Rebuild the index from scratch (after loading data).
+     * @param reservations Every reservation
+     */
+    synchronized void rebuild(Collection<K2530341_Reservation> reservations) {
+        pendingByBook.clear();
+        notifiedByBookUser.clear();
+        notifiedByBook.clear();
+        reservations.forEach(this::add);
+    }
+    
+    /**
+     * Get the oldest pending reservation for a book without removing it.
+     * @param bookId Book ID
+     * @return Next reservation in the queue, or null if there is none
+     */
+    synchronized K2530341_Reservation peekPending(String bookId) {
+        PriorityQueue<K2530341_Reservation> queue = pendingByBook.get(bookId);
+        return queue == null ? null : queue.peek();
+    }
+    
+    /**
+     * Find the notified reservation a user holds for a book.
+     * @param bookId Book ID
+     * @param userId User ID
+     * @return Notified reservation, or null if there is none
+     */
+    synchronized K2530341_Reservation findNotified(String bookId, String userId) {
+        return notifiedByBookUser.get(key(bookId, userId));
+    }
+    
+    /**
+     * Find the notified reservation holding a book.
+     * @param bookId Book ID
+     * @return Notified reservation, or null if there is none
+     */
+    synchronized K2530341_Reservation findNotified(String bookId) {
+        return notifiedByBook.get(bookId);
+    }
+    
+    /**
+     * Get every reservation that is currently NOTIFIED.
+     * @return Copy of the notified reservations
+     */
+    synchronized List<K2530341_Reservation> getNotified() {
+        return new ArrayList<>(notifiedByBookUser.values());
+    }
+    
+    private static String key(String bookId, String userId) {
+        return bookId + '\u0000' + userId;
+    }
+}
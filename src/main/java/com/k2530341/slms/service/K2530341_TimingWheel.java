@@ -0,0 +1,220 @@
+package com.k2530341.slms.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical hashed timing wheel for the service's time-based events
+ * (hold expiry, due-soon reminders, overdue checkpoints). Four wheels of
+ * 256 slots each cover 256, 256^2, 256^3 and 256^4 ticks; a timeout goes
+ * into the slot of the finest wheel that reaches its deadline, and when a
+ * coarser slot comes round its timeouts are cascaded down into the finer
+ * wheels. Slots are doubly linked lists, so scheduling and cancelling are
+ * O(1) however many loans are open, and a tick only touches the timeouts
+ * that are due (or cascading) on it.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_TimingWheel {
+    static final long DEFAULT_TICK_MILLIS = 100;
+    
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    
+    /**
+     * One scheduled task. Cancelling unlinks it from its slot.
+     */
+    final class Timeout {
+        private final long tick;
+        private final Runnable task;
+        private Slot slot;
+        private Timeout prev;
+        private Timeout next;
+        
+        private Timeout(long tick, Runnable task) {
+            this.tick = tick;
+            this.task = task;
+        }
+        
+        /**
+         * Take the task off the wheel if it has not run yet.
+         */
+        void cancel() {
+            synchronized (K2530341_TimingWheel.this) {
+                if (slot != null) {
+                    slot.remove(this);
+                    pending--;
+                }
+            }
+        }
+    }
+    
+    private static final class Slot {
+        private Timeout head;
+        
+        private void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+        
+        private void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+        
+        // unlink everything in the slot, returning the old list
+        private Timeout takeAll() {
+            Timeout first = head;
+            head = null;
+            return first;
+        }
+    }
+    
+    private final long tickMillis;
+    private final Slot[][] wheels = new Slot[LEVELS][WHEEL_SIZE];
+    // last tick processed, counted in ticks since the epoch
+    private long currentTick;
+    // timeouts on the wheel - with none, a catch-up jumps straight to the target tick
+    private int pending;
+    private Thread ticker;
+    
+    /**
+     * @param tickMillis Tick length - tasks run within one tick after their deadline
+     * @param startMillis Wall-clock time to start from (epoch millis)
+     */
+    K2530341_TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (Slot[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Slot();
+            }
+        }
+    }
+    
+    /**
+     * Start the thread that moves the wheel on with the wall clock (once).
+     */
+    synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                advanceTo(System.currentTimeMillis());
+            }
+        }, "slms-timing-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+    
+    /**
+     * Stop the ticker thread; tasks still on the wheel never run.
+     */
+    synchronized void stop() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+    
+    /**
+     * Schedule a task. A deadline that has already passed runs on the next tick.
+     * @param deadlineMillis When to run it (epoch millis)
+     * @param task Task to run on the wheel's thread
+     * @return Handle for cancelling the task
+     */
+    synchronized Timeout schedule(long deadlineMillis, Runnable task) {
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick + 1);
+        Timeout timeout = new Timeout(tick, task);
+        place(timeout);
+        pending++;
+        return timeout;
+    }
+    
+    /**
+     * Move the wheel on to the given time, running every task due by then
+     * on the calling thread, tick by tick. Earlier times are ignored.
+     * @param nowMillis Current time (epoch millis)
+     */
+    void advanceTo(long nowMillis) {
+        List<Timeout> due = new ArrayList<>();
+        synchronized (this) {
+            long target = nowMillis / tickMillis;
+            while (currentTick < target) {
+                if (pending == 0) {
+                    currentTick = target;
+                    break;
+                }
+                currentTick++;
+                // coarser wheels first, so what they cascade can fall through to the finer ones
+                for (int level = LEVELS - 1; level >= 1; level--) {
+                    if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                        cascade(wheels[level][index(currentTick, level)], due);
+                    }
+                }
+                cascade(wheels[0][index(currentTick, 0)], due);
+            }
+        }
+        for (Timeout timeout : due) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error in scheduled task: " + e.getMessage());
+            }
+        }
+    }
+    
+    // re-place every timeout of a slot, collecting the ones that are due now
+    private void cascade(Slot slot, List<Timeout> due) {
+        Timeout timeout = slot.takeAll();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+            if (timeout.tick <= currentTick) {
+                due.add(timeout);
+                pending--;
+            } else {
+                place(timeout);
+            }
+            timeout = next;
+        }
+    }
+    
+    // put a future timeout into the finest wheel whose span reaches it
+    private void place(Timeout timeout) {
+        long delta = timeout.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        // beyond the coarsest wheel it lands in a slot that comes round early and is placed again then
+        wheels[level][index(timeout.tick, level)].add(timeout);
+    }
+    
+    private static int index(long tick, int level) {
+        return (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+    }
+}
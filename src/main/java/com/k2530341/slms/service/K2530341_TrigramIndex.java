@@ -0,0 +1,212 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.book.K2530341_Book;
+
+import java.util.*;
+
+/**
+ * Character-trigram index over the lowercased title, author and category of
+ * every book. Each book gets a dense ordinal and each trigram a BitSet of the
+ * ordinals containing it, so a substring query only verifies the books whose
+ * bitsets survive the intersection of its trigrams. A similarity mode ranks
+ * books by the share of the query's trigrams they contain, which tolerates
+ * small misspellings.
+ * Kept in step by the library service on add/update/delete.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_TrigramIndex {
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // by ordinal - null once the book is removed
+    private final List<K2530341_Book> books = new ArrayList<>();
+    private final List<String[]> normalised = new ArrayList<>();
+    private final Map<String, BitSet> postings = new HashMap<>();
+    
+    /**
+     * Add or re-index a book.
+     * @param book Book to index
+     */
+    synchronized void index(K2530341_Book book) {
+        String[] fields = normalise(book);
+        Set<String> newTrigrams = trigrams(fields);
+        Integer existing = ordinals.get(book.getBookId());
+        int ordinal;
+        if (existing != null) {
+            // Re-index in place: keep the ordinal, drop only the trigrams the edit removed
+            ordinal = existing;
+            for (String trigram : trigrams(normalised.get(ordinal))) {
+                if (!newTrigrams.contains(trigram)) {
+                    clearPosting(trigram, ordinal);
+                }
+            }
+            books.set(ordinal, book);
+            normalised.set(ordinal, fields);
+        } else {
+            ordinal = books.size();
+            ordinals.put(book.getBookId(), ordinal);
+            books.add(book);
+            normalised.add(fields);
+        }
+        for (String trigram : newTrigrams) {
+            postings.computeIfAbsent(trigram, t -> new BitSet()).set(ordinal);
+        }
+    }
+    
+    /**
+     * Remove a book from the index.
+     * @param bookId ID of the book to remove
+     */
+    synchronized void remove(String bookId) {
+        Integer ordinal = ordinals.remove(bookId);
+        if (ordinal == null) {
+            return;
+        }
+        for (String trigram : trigrams(normalised.get(ordinal))) {
+            clearPosting(trigram, ordinal);
+        }
+        books.set(ordinal, null);
+        normalised.set(ordinal, null);
+    }
+    
+    /**
+     * @return Ordinals handed out so far, including ones freed by removals
+     */
+    synchronized int ordinalCount() {
+        return books.size();
+    }
+    
+    private void clearPosting(String trigram, int ordinal) {
+        BitSet bits = postings.get(trigram);
+        bits.clear(ordinal);
+        if (bits.isEmpty()) {
+            postings.remove(trigram);
+        }
+    }
+    
+    /**
+     * Rebuild the index from scratch (after loading data); also compacts
+     * the ordinals left free by removed books.
+     * @param allBooks Every book
+     */
+    synchronized void rebuild(Collection<K2530341_Book> allBooks) {
+        ordinals.clear();
+        books.clear();
+        normalised.clear();
+        postings.clear();
+        allBooks.forEach(this::index);
+    }
+    
+    /**
+     * Find books whose title, author or category contains the query
+     * (case-insensitive) - the same result as a linear contains() scan.
+     * @param query Text to look for
+     * @return Matching books in index order
+     */
+    synchronized List<K2530341_Book> searchSubstring(String query) {
+        String lowerQuery = query.toLowerCase();
+        List<K2530341_Book> results = new ArrayList<>();
+        
+        BitSet candidates;
+        if (lowerQuery.length() < 3) {
+            // Too short for a trigram - every live book is a candidate
+            candidates = new BitSet();
+            ordinals.values().forEach(candidates::set);
+        } else {
+            List<BitSet> lists = new ArrayList<>();
+            for (String trigram : trigrams(lowerQuery)) {
+                BitSet bits = postings.get(trigram);
+                if (bits == null) {
+                    return results;
+                }
+                lists.add(bits);
+            }
+            // Intersect starting from the shortest posting list
+            lists.sort(Comparator.comparingInt(BitSet::cardinality));
+            candidates = (BitSet) lists.get(0).clone();
+            for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+                candidates.and(lists.get(i));
+            }
+        }
+        
+        // Trigrams can come from different positions or fields - confirm the real match
+        for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+            for (String field : normalised.get(ordinal)) {
+                if (field.contains(lowerQuery)) {
+                    results.add(books.get(ordinal));
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Find books containing at least the given share of the query's trigrams.
+     * @param query Text to look for (may be misspelled)
+     * @param minSimilarity Share of query trigrams that must be present, 0-1
+     * @return Matching books, most similar first
+     */
+    synchronized List<K2530341_Book> searchSimilar(String query, double minSimilarity) {
+        Set<String> queryTrigrams = trigrams(query.toLowerCase());
+        if (queryTrigrams.isEmpty()) {
+            return searchSubstring(query);
+        }
+        
+        int[] counts = new int[books.size()];
+        for (String trigram : queryTrigrams) {
+            BitSet bits = postings.get(trigram);
+            if (bits != null) {
+                for (int ordinal = bits.nextSetBit(0); ordinal >= 0; ordinal = bits.nextSetBit(ordinal + 1)) {
+                    counts[ordinal]++;
+                }
+            }
+        }
+        
+        int needed = (int) Math.ceil(minSimilarity * queryTrigrams.size());
+        List<Integer> matches = new ArrayList<>();
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            if (counts[ordinal] > 0 && counts[ordinal] >= needed) {
+                matches.add(ordinal);
+            }
+        }
+        matches.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+        
+        List<K2530341_Book> results = new ArrayList<>(matches.size());
+        for (int ordinal : matches) {
+            results.add(books.get(ordinal));
+        }
+        return results;
+    }
+    
+    private static String[] normalise(K2530341_Book book) {
+        return new String[] {
+            lower(book.getTitle()),
+            lower(book.getAuthor()),
+            lower(book.getCategory())
+        };
+    }
+    
+    private static String lower(String text) {
+        return text == null ? "" : text.toLowerCase();
+    }
+    
+    // trigrams of every field (never spanning two fields)
+    private static Set<String> trigrams(String[] fields) {
+        Set<String> trigrams = new HashSet<>();
+        for (String field : fields) {
+            addTrigrams(field, trigrams);
+        }
+        return trigrams;
+    }
+    
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(text, trigrams);
+        return trigrams;
+    }
+    
+    private static void addTrigrams(String text, Set<String> trigrams) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+    }
+}
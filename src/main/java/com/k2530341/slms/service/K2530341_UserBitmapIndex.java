@@ -0,0 +1,153 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.user.K2530341_MembershipType;
+import com.k2530341.slms.model.user.K2530341_User;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Bitmaps over the users for combined filters. Each user gets a dense
+ * ordinal; there is one BitSet per membership type and one of the users
+ * with at least one open borrow, so a filter is a few bitmap ANDs.
+ * Kept in step by the library service on add/update/delete and whenever a
+ * user's open borrows change.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_UserBitmapIndex {
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // by ordinal - null once the user is removed
+    private final List<K2530341_User> users = new ArrayList<>();
+    private final List<K2530341_MembershipType> indexedType = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final Map<K2530341_MembershipType, BitSet> byMembership = new EnumMap<>(K2530341_MembershipType.class);
+    private final BitSet activeBorrowers = new BitSet();
+    
+    /**
+     * Add or re-index a user.
+     * @param user User to index
+     * @param hasActiveBorrows Whether the user has a book out
+     */
+    synchronized void index(K2530341_User user, boolean hasActiveBorrows) {
+        Integer existing = ordinals.get(user.getUserId());
+        int ordinal;
+        if (existing != null) {
+            // an edit keeps the user's ordinal - only the membership bit moves
+            ordinal = existing;
+            clearMembership(ordinal);
+            users.set(ordinal, user);
+            indexedType.set(ordinal, user.getMembershipType());
+        } else {
+            ordinal = users.size();
+            ordinals.put(user.getUserId(), ordinal);
+            users.add(user);
+            indexedType.add(user.getMembershipType());
+        }
+        live.set(ordinal);
+        if (user.getMembershipType() != null) {
+            byMembership.computeIfAbsent(user.getMembershipType(), t -> new BitSet()).set(ordinal);
+        }
+        activeBorrowers.set(ordinal, hasActiveBorrows);
+    }
+    
+    /**
+     * Remove a user from the index.
+     * @param userId ID of the user to remove
+     */
+    synchronized void remove(String userId) {
+        Integer ordinal = ordinals.remove(userId);
+        if (ordinal == null) {
+            return;
+        }
+        clearMembership(ordinal);
+        live.clear(ordinal);
+        activeBorrowers.clear(ordinal);
+        users.set(ordinal, null);
+        indexedType.set(ordinal, null);
+    }
+    
+    /**
+     * @return Ordinals handed out so far, including ones freed by removals
+     */
+    synchronized int ordinalCount() {
+        return users.size();
+    }
+    
+    private void clearMembership(int ordinal) {
+        BitSet bits = indexedType.get(ordinal) == null ? null : byMembership.get(indexedType.get(ordinal));
+        if (bits != null) {
+            bits.clear(ordinal);
+        }
+    }
+    
+    /**
+     * Record whether a user currently has a book out.
+     * @param userId User ID
+     * @param hasActiveBorrows Whether the user has an open borrow
+     */
+    synchronized void setActiveBorrows(String userId, boolean hasActiveBorrows) {
+        Integer ordinal = ordinals.get(userId);
+        if (ordinal != null) {
+            activeBorrowers.set(ordinal, hasActiveBorrows);
+        }
+    }
+    
+    /**
+     * Rebuild the index from scratch (after loading data); also compacts
+     * the ordinals left free by removed users.
+     * @param allUsers Every user
+     * @param hasActiveBorrows Tells whether a user ID has an open borrow
+     */
+    synchronized void rebuild(Collection<K2530341_User> allUsers, Predicate<String> hasActiveBorrows) {
+        ordinals.clear();
+        users.clear();
+        indexedType.clear();
+        live.clear();
+        byMembership.clear();
+        activeBorrowers.clear();
+        for (K2530341_User user : allUsers) {
+            index(user, hasActiveBorrows.test(user.getUserId()));
+        }
+    }
+    
+    /**
+     * Get the bitmap of users matching a filter.
+     * @param filter User filter
+     * @return Ordinals of the matching users
+     */
+    synchronized BitSet select(K2530341_UserFilter filter) {
+        BitSet result = (BitSet) live.clone();
+        if (!filter.getMembershipTypes().isEmpty()) {
+            BitSet anyType = new BitSet();
+            for (K2530341_MembershipType type : filter.getMembershipTypes()) {
+                BitSet bits = byMembership.get(type);
+                if (bits != null) {
+                    anyType.or(bits);
+                }
+            }
+            result.and(anyType);
+        }
+        if (filter.getActiveBorrows() != null) {
+            if (filter.getActiveBorrows()) {
+                result.and(activeBorrowers);
+            } else {
+                result.andNot(activeBorrowers);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Get the users matching a filter.
+     * @param filter User filter
+     * @return Matching users in ordinal order
+     */
+    synchronized List<K2530341_User> find(K2530341_UserFilter filter) {
+        BitSet selection = select(filter);
+        List<K2530341_User> result = new ArrayList<>(selection.cardinality());
+        for (int ordinal = selection.nextSetBit(0); ordinal >= 0; ordinal = selection.nextSetBit(ordinal + 1)) {
+            result.add(users.get(ordinal));
+        }
+        return result;
+    }
+}
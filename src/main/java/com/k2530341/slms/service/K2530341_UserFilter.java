@@ -0,0 +1,36 @@
+package com.k2530341.slms.service;
+
+import com.k2530341.slms.model.user.K2530341_MembershipType;
+
+import java.util.*;
+
+/**
+ * Composable filter over the users, answered from the user bitmaps.
+ * A user matches when their membership type is one of the given types and,
+ * if set, they do (or do not) have a book out; a criterion left unset does
+ * not filter.
+ * e.g. new K2530341_UserFilter().withMembershipType(GUEST).withActiveBorrows(true)
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+public class K2530341_UserFilter {
+    private final Set<K2530341_MembershipType> membershipTypes = EnumSet.noneOf(K2530341_MembershipType.class);
+    private Boolean activeBorrows;
+    
+    public K2530341_UserFilter withMembershipType(K2530341_MembershipType... types) {
+        membershipTypes.addAll(Arrays.asList(types));
+        return this;
+    }
+    
+    public K2530341_UserFilter withActiveBorrows(boolean activeBorrows) {
+        this.activeBorrows = activeBorrows;
+        return this;
+    }
+    
+    Set<K2530341_MembershipType> getMembershipTypes() {
+        return membershipTypes;
+    }
+    
+    Boolean getActiveBorrows() {
+        return activeBorrows;
+    }
+}
@@ -1,38 +1,65 @@
 package com.librarymanage.smartlibrarymanagement.util;
 
 public class K2530341_IdGenerator {
+    public static final String BOOK_PREFIX = "BK-";
+    public static final String STUDENT_PREFIX = "STU-";
+    public static final String FACULTY_PREFIX = "FCL-";
+    public static final String GUEST_PREFIX = "GST-";
+    public static final String BORROW_PREFIX = "BR-";
+    public static final String RESERVATION_PREFIX = "RES-";
+    public static final String NOTIFICATION_PREFIX = "NTF-";
+
     // Generates next Book ID in format BK-XXXX
     public static String getNextBookId(int currentMax) {
-        return String.format("BK-%03d", currentMax + 1);
+        return format(BOOK_PREFIX, currentMax + 1);
     }
 
     // Generates next Student ID in format STU-XXXX
     public static String getNextStudentId(int currentMax) {
-        return String.format("STU-%03d", currentMax + 1);
+        return format(STUDENT_PREFIX, currentMax + 1);
     }
 
     // Generates next Faculty ID in format FCL-XXXX
     public static String getNextFacultyId(int currentMax) {
-        return String.format("FCL-%03d", currentMax + 1);
+        return format(FACULTY_PREFIX, currentMax + 1);
     }
 
     // Generates next Guest ID in format GST-XXXX
     public static String getNextGuestId(int currentMax) {
-        return String.format("GST-%03d", currentMax + 1);
+        return format(GUEST_PREFIX, currentMax + 1);
     }
 
     // Generates next Borrow ID in format BR-XXXX
     public static String getNextBorrowId(int currentMax) {
-        return String.format("BR-%04d", currentMax + 1);
+        return format(BORROW_PREFIX, currentMax + 1);
     }
 
     // Generates next Reservation ID in format RES-XXXX
     public static String getNextReservationId(int currentMax) {
-        return String.format("RES-%04d", currentMax + 1);
+        return format(RESERVATION_PREFIX, currentMax + 1);
     }
 
     // Generates next Notification ID in format NTF-XXXX
     public static String getNextNotificationId(int currentMax) {
-        return String.format("NTF-%04d", currentMax + 1);
+        return format(NOTIFICATION_PREFIX, currentMax + 1);
+    }
+
+    // Formats a sequence number with its prefix - books and users get 3 digits, records 4
+    public static String format(String prefix, int number) {
+        boolean entity = prefix.equals(BOOK_PREFIX) || prefix.equals(STUDENT_PREFIX)
+            || prefix.equals(FACULTY_PREFIX) || prefix.equals(GUEST_PREFIX);
+        return prefix + String.format(entity ? "%03d" : "%04d", number);
+    }
+
+    // Reads the sequence number back out of an ID, or -1 if it is not prefix + digits
+    public static int parse(String prefix, String id) {
+        if (id == null || !id.startsWith(prefix) || id.length() == prefix.length()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 }
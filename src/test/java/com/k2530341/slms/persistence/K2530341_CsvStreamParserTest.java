@@ -0,0 +1,143 @@
+package com.k2530341.slms.persistence;
+
+import com.k2530341.slms.model.K2530341_Borrow;
+import com.opencsv.CSVReader;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.FileReader;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the streaming CSV parser, including a comparison with the OpenCSV load path.
+ * Author: M.Y.M. SAJIDH (K2530341)
+ */
+class K2530341_CsvStreamParserTest {
+    private static final int EQUIVALENCE_ROWS = 2_000;
+    private static final int BENCHMARK_ROWS = 100_000;
+    private static final int BENCHMARK_RUNS = 5;
+    
+    @TempDir
+    Path dataDir;
+    
+    private List<String[]> parse(String csv) throws Exception {
+        List<String[]> rows = new ArrayList<>();
+        K2530341_CsvStreamParser.parse(new StringReader(csv), false, row -> rows.add(row.toArray()));
+        return rows;
+    }
+    
+    @Test
+    @DisplayName("Test quoted fields, doubled quotes and line breaks")
+    void testQuoting() throws Exception {
+        List<String[]> rows = parse("\"a\",\"b, c\",\"say \"\"hi\"\"\"\r\n"
+            + "plain,,\"two\nlines\"\n"
+            + "\n"
+            + "\"last\",\"\"");
+        
+        assertEquals(3, rows.size());
+        assertArrayEquals(new String[] {"a", "b, c", "say \"hi\""}, rows.get(0));
+        assertArrayEquals(new String[] {"plain", "", "two\nlines"}, rows.get(1));
+        assertArrayEquals(new String[] {"last", ""}, rows.get(2));
+    }
+    
+    @Test
+    @DisplayName("Test typed fields are parsed from the chars")
+    void testTypedFields() throws Exception {
+        K2530341_CsvStreamParser.parse(new StringReader(
+            "\"2024-02-29\",\"2024-03-01T09:05:07\",\"-42\",\"12.5\",\"0.1\",\"TRUE\",\"BORROWS\",\"\"\n"),
+            false, row -> {
+                assertEquals(LocalDate.of(2024, 2, 29), row.getDate(0));
+                assertEquals(LocalDateTime.of(2024, 3, 1, 9, 5, 7), row.getDateTime(1));
+                assertEquals(-42, row.getInt(2));
+                assertEquals(12.5, row.getDouble(3));
+                assertEquals(0.1, row.getDouble(4));
+                assertTrue(row.getBoolean(5));
+                assertEquals(K2530341_DataTable.BORROWS, row.getEnum(6, K2530341_DataTable.values()));
+                assertNull(row.getDate(7));
+                assertNull(row.getDateTime(7));
+            });
+        
+        K2530341_CsvStreamParser.parse(new StringReader("x,1e3\n"), false, row -> {
+            assertThrows(NumberFormatException.class, () -> row.getInt(0));
+            assertEquals(1000.0, row.getDouble(1));
+        });
+    }
+    
+    @Test
+    @DisplayName("Test streaming parser loads the same borrows as the OpenCSV load path")
+    void testMatchesOpenCsv() throws Exception {
+        K2530341_BorrowCSVManager manager = new K2530341_BorrowCSVManager(dataDir.toString());
+        saveBorrows(manager, EQUIVALENCE_ROWS);
+        
+        List<K2530341_Borrow> streamResult = new ArrayList<>();
+        manager.loadBorrows(streamResult::add);
+        assertSameRecords(manager, loadWithOpenCsv(manager), streamResult);
+    }
+    
+    @Test
+    @DisplayName("Benchmark streaming parser against the OpenCSV load path")
+    void benchmarkAgainstOpenCsv() throws Exception {
+        // Slow - run with -Dslms.benchmark=true
+        assumeTrue(Boolean.getBoolean("slms.benchmark"), "benchmark disabled");
+        K2530341_BorrowCSVManager manager = new K2530341_BorrowCSVManager(dataDir.toString());
+        saveBorrows(manager, BENCHMARK_ROWS);
+        
+        long openCsvBest = Long.MAX_VALUE;
+        long streamBest = Long.MAX_VALUE;
+        List<K2530341_Borrow> openCsvResult = null;
+        List<K2530341_Borrow> streamResult = null;
+        for (int run = 0; run < BENCHMARK_RUNS; run++) {
+            long begin = System.nanoTime();
+            openCsvResult = loadWithOpenCsv(manager);
+            openCsvBest = Math.min(openCsvBest, System.nanoTime() - begin);
+            
+            begin = System.nanoTime();
+            streamResult = new ArrayList<>();
+            manager.loadBorrows(streamResult::add);
+            streamBest = Math.min(streamBest, System.nanoTime() - begin);
+        }
+        
+        System.out.printf("[CsvStreamParser] %d borrow rows - OpenCSV: %d ms, streaming: %d ms%n",
+            BENCHMARK_ROWS, openCsvBest / 1_000_000, streamBest / 1_000_000);
+        assertSameRecords(manager, openCsvResult, streamResult);
+    }
+    
+    private static void saveBorrows(K2530341_BorrowCSVManager manager, int count) {
+        List<K2530341_Borrow> borrows = new ArrayList<>();
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < count; i++) {
+            LocalDate borrowDate = start.plusDays(i % 1500);
+            borrows.add(new K2530341_Borrow(String.format("BR-%06d", i), "BK-" + (i % 500), "STU-" + (i % 300),
+                borrowDate, borrowDate.plusDays(14), i % 3 == 0 ? null : borrowDate.plusDays(i % 20), (i % 7) * 12.5));
+        }
+        manager.saveBorrows(borrows);
+    }
+    
+    private List<K2530341_Borrow> loadWithOpenCsv(K2530341_BorrowCSVManager manager) throws Exception {
+        List<K2530341_Borrow> result = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new FileReader(dataDir.resolve("borrows.csv").toFile()))) {
+            reader.readNext(); // Skip header
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                result.add(manager.fromRow(line));
+            }
+        }
+        return result;
+    }
+    
+    // Both paths must produce the same records
+    private static void assertSameRecords(K2530341_BorrowCSVManager manager, List<K2530341_Borrow> expected,
+                                          List<K2530341_Borrow> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(manager.toRow(expected.get(i)), manager.toRow(actual.get(i)));
+        }
+    }
+}